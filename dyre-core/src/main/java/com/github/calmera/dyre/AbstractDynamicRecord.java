@@ -0,0 +1,211 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Base class for generated {@link DynamicRecord} implementations. Generated classes only
+ * implement the methods of the record interface itself, each of them delegating to a
+ * prepared accessor of the interface's {@link DispatchTable}. They behave exactly like a
+ * proxy backed by the same {@link GenericRecordInvocationHandler}, except that calls do
+ * not go through an {@link java.lang.reflect.InvocationHandler}.
+ *
+ * Classes generated at compile time by the dyre annotation processor pass the
+ * {@link RecordDefinition} of their interface and refer to its accessors by index.
+ *
+ * @author Daan Gerits
+ */
+public abstract class AbstractDynamicRecord implements DynamicRecord {
+
+	private static final RecordAccessor DIRECT_RETRIEVER = new RecordAccessor.DirectRetriever();
+
+	private static final RecordAccessor DIRECT_MANIPULATOR = new RecordAccessor.DirectManipulator();
+
+	private static final RecordAccessor EQUALS = new RecordAccessor.Equals();
+
+	protected final GenericRecordInvocationHandler handler;
+
+	private final DispatchTable table;
+
+	protected AbstractDynamicRecord(GenericRecordInvocationHandler handler) {
+		this.handler = handler;
+		this.table = null;
+	}
+
+	protected AbstractDynamicRecord(GenericRecordInvocationHandler handler, RecordDefinition definition) {
+		this.handler = handler;
+		this.table = definition.table();
+		handler.bind(this.table);
+	}
+
+	@Override
+	public GenericRecord record() {
+		return handler.exposeRecord();
+	}
+
+	@Override
+	public Object retrieveDirect(Class<? extends DynamicRecord> declaringClass, String fieldName) {
+		return invoke(DIRECT_RETRIEVER, new Object[] { declaringClass, fieldName });
+	}
+
+	@Override
+	public void manipulateDirect(Class<? extends DynamicRecord> declaringClass, String fieldName, Object value) {
+		invoke(DIRECT_MANIPULATOR, new Object[] { declaringClass, fieldName, value });
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return (Boolean) invoke(EQUALS, new Object[] { obj });
+	}
+
+	@Override
+	public int hashCode() {
+		return handler.record().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return handler.record().toString();
+	}
+
+	/**
+	 * Retrieve the value of the getter at the given index of the record definition.
+	 * @param index the index of the getter
+	 * @return the decoded value
+	 */
+	protected final Object get(int index) {
+		return get((RecordAccessor.Getter) table.accessorAt(index));
+	}
+
+	/**
+	 * Set a value through the setter at the given index of the record definition.
+	 * @param index the index of the setter
+	 * @param value the value to set
+	 */
+	protected final void set(int index, Object value) {
+		set((RecordAccessor.Setter) table.accessorAt(index), value);
+	}
+
+	/**
+	 * Retrieve the value of the primitive getter at the given index of the record
+	 * definition, as held by the record.
+	 * @param index the index of the getter
+	 * @return the boxed value
+	 */
+	protected final Object getPrimitive(int index) {
+		return getPrimitive((RecordAccessor.Getter) table.accessorAt(index));
+	}
+
+	/**
+	 * Set a value through the primitive setter at the given index of the record definition,
+	 * writing it into the record as is.
+	 * @param index the index of the setter
+	 * @param value the boxed value to set
+	 */
+	protected final void setPrimitive(int index, Object value) {
+		setPrimitive((RecordAccessor.Setter) table.accessorAt(index), value);
+	}
+
+	/**
+	 * Invoke the accessor at the given index of the record definition.
+	 * @param index the index of the accessor
+	 * @param args the arguments of the method
+	 * @return the result of the accessor
+	 */
+	protected final Object invoke(int index, Object... args) {
+		return invoke(table.accessorAt(index), args);
+	}
+
+	final Object get(RecordAccessor.Getter getter) {
+		try {
+			return handler.getFieldValue(getter);
+		}
+		catch (ValueMappingException vme) {
+			throw new UndeclaredThrowableException(vme);
+		}
+	}
+
+	final void set(RecordAccessor.Setter setter, Object value) {
+		try {
+			handler.setFieldValue(setter, value);
+		}
+		catch (ValueMappingException vme) {
+			throw new UndeclaredThrowableException(vme);
+		}
+	}
+
+	final Object getPrimitive(RecordAccessor.Getter getter) {
+		try {
+			return handler.getPrimitiveValue(getter);
+		}
+		catch (ValueMappingException vme) {
+			throw new UndeclaredThrowableException(vme);
+		}
+	}
+
+	final void setPrimitive(RecordAccessor.Setter setter, Object value) {
+		try {
+			handler.setPrimitiveValue(setter, value);
+		}
+		catch (ValueMappingException vme) {
+			throw new UndeclaredThrowableException(vme);
+		}
+	}
+
+	final void add(RecordAccessor.Adder adder, Object value) {
+		try {
+			handler.addValueToField(adder.getter, adder.setter, value);
+		}
+		catch (ValueMappingException vme) {
+			throw new UndeclaredThrowableException(vme);
+		}
+	}
+
+	final void put(RecordAccessor.Putter putter, Object key, Object value) {
+		try {
+			handler.putValueIntoField(putter.getter, putter.setter, (String) key, value);
+		}
+		catch (ValueMappingException vme) {
+			throw new UndeclaredThrowableException(vme);
+		}
+	}
+
+	final void remove(RecordAccessor.Remover remover, Object itemOrKey) {
+		try {
+			handler.removeFromField(remover.getter, remover.setter, itemOrKey);
+		}
+		catch (ValueMappingException vme) {
+			throw new UndeclaredThrowableException(vme);
+		}
+	}
+
+	final Object invoke(RecordAccessor accessor, Object[] args) {
+		try {
+			return accessor.invoke(handler, this, args);
+		}
+		catch (RuntimeException | Error ex) {
+			throw ex;
+		}
+		catch (Throwable t) {
+			throw new UndeclaredThrowableException(t);
+		}
+	}
+
+}
@@ -20,16 +20,21 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.UUID;
 
 import com.github.calmera.dyre.annotations.DyreField;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
+import org.apache.avro.util.Utf8;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +49,13 @@ public abstract class AvroUtils {
 	private static final Logger logger = LoggerFactory.getLogger(AvroUtils.class);
 
 	public static Schema schemaFromClass(Class<? extends DynamicRecord> recordClass) throws ValueMappingException {
+		// -- the schema of classes generated at compile time has been derived already, unless
+		// -- codecs take over some of the types, which the processor knows nothing about
+		RecordProvider<?> provider = GeneratedRecords.provider(recordClass);
+		if (provider != null && provider.schema() != null && !ValueCodecs.any()) {
+			return provider.schema();
+		}
+
 		Schema schema = Schema.createRecord(recordClass.getSimpleName(), null, null, false);
 
 		// -- detect the methods
@@ -115,6 +127,28 @@ public abstract class AvroUtils {
 		return schema;
 	}
 
+	/**
+	 * Project the writer schema onto the fields declared by the record interface, keeping
+	 * the fields in the order, and with the schemas, of the writer. Used as reader schema,
+	 * the projection makes the avro schema resolution skip all other fields.
+	 * @param recordClass the record interface
+	 * @param writerSchema the schema the records have been written with
+	 * @return the projected record schema
+	 */
+	public static Schema projection(Class<? extends DynamicRecord> recordClass, Schema writerSchema) {
+		Set<String> fieldNames = DispatchTable.forClass(recordClass).fieldNames();
+
+		List<Schema.Field> fields = new ArrayList<>();
+		for (Schema.Field field : writerSchema.getFields()) {
+			if (fieldNames.contains(field.name())) {
+				fields.add(new Schema.Field(field, field.schema()));
+			}
+		}
+
+		return Schema.createRecord(writerSchema.getName(), writerSchema.getDoc(), writerSchema.getNamespace(),
+				writerSchema.isError(), fields);
+	}
+
 	private static void addAnnotations(Map<String, Map<Class<? extends Annotation>, Annotation>> annotations,
 			String fieldName, Annotation[] toAdd) {
 		annotations.computeIfAbsent(fieldName, (k) -> new HashMap<>());
@@ -136,10 +170,50 @@ public abstract class AvroUtils {
 
 		if (type instanceof Class<?>) {
 			Class<?> clazz = (Class<?>) type;
-			if (DynamicRecord.class.isAssignableFrom(clazz)) {
+			// -- primitives can't be null, so their fields are always required
+			if (clazz == boolean.class) {
+				return SchemaBuilder.builder().booleanType();
+			}
+			else if (clazz == int.class) {
+				return SchemaBuilder.builder().intType();
+			}
+			else if (clazz == long.class) {
+				return SchemaBuilder.builder().longType();
+			}
+			else if (clazz == float.class) {
+				return SchemaBuilder.builder().floatType();
+			}
+			else if (clazz == double.class) {
+				return SchemaBuilder.builder().doubleType();
+			}
+			else if (ValueCodecs.codec(clazz, null) != null) {
+				return makeOptionalIfNeeded(ValueCodecs.codec(clazz, null).schema(), anno);
+			}
+			else if (anno != null && anno.size() > 0
+					&& (clazz == byte[].class || clazz == ByteBuffer.class || clazz == UUID.class)) {
+				if (clazz == UUID.class && anno.size() != 16) {
+					throw new ValueMappingException(type.getTypeName() + ": fixed uuids require a size of 16");
+				}
+
+				return makeOptionalIfNeeded(SchemaBuilder.fixed("Fixed" + anno.size()).size(anno.size()), anno);
+			}
+			else if (LogicalConversions.defaultSchema(clazz) != null) {
+				return makeOptionalIfNeeded(LogicalConversions.defaultSchema(clazz), anno);
+			}
+			else if (clazz == BigDecimal.class) {
+				if (anno == null || anno.precision() <= 0) {
+					throw new ValueMappingException(type.getTypeName() + ": decimals require a precision");
+				}
+
+				return makeOptionalIfNeeded(LogicalConversions.decimalSchema(anno.precision(), anno.scale()), anno);
+			}
+			else if (clazz.isSealed()) {
+				return unionOfPermittedSubclasses(clazz, anno);
+			}
+			else if (DynamicRecord.class.isAssignableFrom(clazz)) {
 				return makeOptionalIfNeeded(schemaFromClass((Class<? extends DynamicRecord>) type), anno);
 			}
-			else if (String.class.isAssignableFrom(clazz)) {
+			else if (clazz == String.class || clazz == CharSequence.class || clazz == Utf8.class) {
 				return makeOptionalIfNeeded(SchemaBuilder.builder().stringType(), anno);
 			}
 			else if (Boolean.class.isAssignableFrom(clazz)) {
@@ -157,7 +231,7 @@ public abstract class AvroUtils {
 			else if (Double.class.isAssignableFrom(clazz)) {
 				return makeOptionalIfNeeded(SchemaBuilder.builder().doubleType(), anno);
 			}
-			else if (byte[].class.isAssignableFrom(clazz)) {
+			else if (clazz == byte[].class || clazz == ByteBuffer.class) {
 				return makeOptionalIfNeeded(SchemaBuilder.builder().bytesType(), anno);
 			}
 			else if (clazz.isEnum()) {
@@ -208,6 +282,25 @@ public abstract class AvroUtils {
 		return ! ((DyreField) annotation).required();
 	}
 
+	private static Schema unionOfPermittedSubclasses(Class<?> sealedClass, DyreField anno)
+			throws ValueMappingException {
+		List<Schema> branches = new ArrayList<>();
+		if (anno != null && !anno.required()) {
+			branches.add(SchemaBuilder.builder().nullType());
+		}
+
+		for (Class<?> permitted : sealedClass.getPermittedSubclasses()) {
+			if (!DynamicRecord.class.isAssignableFrom(permitted)) {
+				throw new ValueMappingException(sealedClass.getName() + ": permitted subclass " + permitted.getName()
+						+ " is not a " + DynamicRecord.class.getSimpleName());
+			}
+
+			branches.add(schemaFromClass((Class<? extends DynamicRecord>) permitted));
+		}
+
+		return Schema.createUnion(branches);
+	}
+
 	private static Schema makeOptionalIfNeeded(Schema schema, DyreField anno) {
 		if (anno != null && !anno.required()) {
 			return SchemaBuilder.unionOf().nullType().and().type(schema).endUnion();
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.avro.Conversion;
+import org.apache.avro.Schema;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Checks the fields of a {@link DynamicRecord} interface against a schema once, when the
+ * {@link RecordBinding} is created: whether every field exists, whether the schema holds
+ * values of the type of its getter and accepts those of its setter, and whether primitive
+ * getters never face null values.
+ * All problems are collected instead of stopping at the first one.
+ *
+ * @author Daan Gerits
+ */
+final class BindingValidator {
+
+	private BindingValidator() {
+	}
+
+	/**
+	 * Validate the binding.
+	 * @param binding the binding to validate
+	 * @param fields the fields of the interface
+	 * @param getters the getter of every field which has one
+	 * @param setters the setters of the interface
+	 * @return the problems found, empty if the interface matches the schema
+	 */
+	static List<String> validate(RecordBinding binding, Collection<RecordField> fields,
+			Map<RecordField, RecordAccessor.Getter> getters, Collection<RecordAccessor.Setter> setters) {
+		List<String> problems = new ArrayList<>();
+
+		for (RecordField field : fields) {
+			Schema schema = binding.fieldSchema(field);
+			if (schema == null) {
+				problems.add("field " + field.name() + " is not part of " + binding.schema().getFullName());
+				continue;
+			}
+
+			RecordAccessor.Getter getter = getters.get(field);
+			if (getter != null) {
+				check(getter.type, schema, "field " + field.name(), problems);
+			}
+		}
+
+		for (RecordAccessor.Setter setter : setters) {
+			Schema schema = binding.fieldSchema(setter.field);
+			RecordAccessor.Getter getter = getters.get(setter.field);
+
+			// -- setters taking the type of their getter have been checked already
+			if (schema != null && (getter == null || !getter.type.equals(setter.type))) {
+				checkSetter(setter.type, schema, "setter of field " + setter.field.name(), problems);
+			}
+		}
+
+		return problems;
+	}
+
+	private static void checkSetter(Type type, Schema schema, String path, List<String> problems) {
+		// -- primitives never write null values, so nullable fields are fine
+		if (type instanceof Class<?> cls && cls.isPrimitive()) {
+			Schema target = schema;
+			if (schema.getType() == Schema.Type.UNION && schema.getTypes().size() == 2 && schema.isNullable()) {
+				target = schema.getTypes().get(schema.getTypes().get(0).getType() == Schema.Type.NULL ? 1 : 0);
+			}
+
+			if (primitiveSchemaType(cls) != target.getType()) {
+				problems.add(mismatch(path, type, schema));
+			}
+			return;
+		}
+
+		check(type, schema, path, problems);
+	}
+
+	private static void check(Type type, Schema schema, String path, List<String> problems) {
+		if (type instanceof Class<?> cls && cls.isPrimitive()) {
+			if (schema.isNullable()) {
+				problems.add(path + ": a " + cls.getName() + " can't hold the null values of " + schema);
+			}
+			else if (primitiveSchemaType(cls) != schema.getType()) {
+				problems.add(mismatch(path, type, schema));
+			}
+			return;
+		}
+
+		if (schema.getType() == Schema.Type.UNION) {
+			checkUnion(type, schema, path, problems);
+			return;
+		}
+
+		if (type instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw) {
+			Type[] arguments = parameterized.getActualTypeArguments();
+
+			if (List.class.isAssignableFrom(raw) && schema.getType() == Schema.Type.ARRAY) {
+				check(arguments[0], schema.getElementType(), path + "[]", problems);
+			}
+			else if (Map.class.isAssignableFrom(raw) && schema.getType() == Schema.Type.MAP) {
+				check(arguments[1], schema.getValueType(), path + "{}", problems);
+			}
+			else {
+				problems.add(mismatch(path, type, schema));
+			}
+			return;
+		}
+
+		if (!(type instanceof Class<?> cls)) {
+			problems.add(path + ": unsupported type " + type.getTypeName());
+			return;
+		}
+
+		if (cls.isEnum() && schema.getType() == Schema.Type.ENUM) {
+			EnumMapping<?> mapping = EnumMapping.of((Class) cls, schema);
+			for (String mismatch : mapping.mismatches()) {
+				problems.add(path + ": " + mismatch);
+			}
+		}
+		else if (!accepts(cls, schema)) {
+			problems.add(mismatch(path, type, schema));
+		}
+	}
+
+	private static void checkUnion(Type type, Schema union, String path, List<String> problems) {
+		if (type == Object.class) {
+			return;
+		}
+
+		for (Schema branch : union.getTypes()) {
+			if (branch.getType() == Schema.Type.NULL) {
+				continue;
+			}
+
+			if (type instanceof Class<?> cls && cls.isSealed()) {
+				checkPermitted(cls, branch, path, problems);
+			}
+			else {
+				check(type, branch, path, problems);
+			}
+		}
+	}
+
+	private static void checkPermitted(Class<?> sealedClass, Schema branch, String path, List<String> problems) {
+		if (isPermitted(sealedClass, branch)) {
+			return;
+		}
+
+		problems.add(path + ": none of the permitted subclasses of " + sealedClass.getName() + " matches "
+				+ branch.getFullName());
+	}
+
+	private static boolean isPermitted(Class<?> sealedClass, Schema schema) {
+		for (Class<?> permitted : sealedClass.getPermittedSubclasses()) {
+			if (permitted.getSimpleName().equals(schema.getName())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean accepts(Class<?> cls, Schema schema) {
+		if (cls == Object.class) {
+			return true;
+		}
+
+		ValueCodec<?> codec = ValueCodecs.codec(cls, schema.getType());
+		if (codec != null) {
+			return true;
+		}
+
+		Conversion<?> conversion = LogicalConversions.conversion(schema);
+		if (conversion != null && conversion.getConvertedType() == cls) {
+			return true;
+		}
+
+		if (cls.isSealed()) {
+			return isPermitted(cls, schema);
+		}
+
+		return switch (schema.getType()) {
+		case RECORD -> DynamicRecord.class.isAssignableFrom(cls);
+		case STRING -> cls == String.class || cls == CharSequence.class || cls == Utf8.class;
+		case ENUM -> cls == String.class;
+		case BYTES -> cls == byte[].class || cls == ByteBuffer.class;
+		case FIXED -> cls == byte[].class || cls == ByteBuffer.class
+				|| (cls == UUID.class && schema.getFixedSize() == 16);
+		case INT -> cls == Integer.class;
+		case LONG -> cls == Long.class;
+		case FLOAT -> cls == Float.class;
+		case DOUBLE -> cls == Double.class;
+		case BOOLEAN -> cls == Boolean.class;
+		default -> false;
+		};
+	}
+
+	private static Schema.Type primitiveSchemaType(Class<?> cls) {
+		if (cls == int.class) {
+			return Schema.Type.INT;
+		}
+		else if (cls == long.class) {
+			return Schema.Type.LONG;
+		}
+		else if (cls == float.class) {
+			return Schema.Type.FLOAT;
+		}
+		else if (cls == double.class) {
+			return Schema.Type.DOUBLE;
+		}
+		else if (cls == boolean.class) {
+			return Schema.Type.BOOLEAN;
+		}
+
+		return null;
+	}
+
+	private static String mismatch(String path, Type type, Schema schema) {
+		return path + ": a " + type.getTypeName() + " can't be mapped onto " + schema;
+	}
+
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.avro.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps every method of a {@link DynamicRecord} interface onto a prepared
+ * {@link RecordAccessor}. The table is built once per interface and cached, which means
+ * the naming conventions (get, is, set, addTo, putInto and removeFrom) are only evaluated
+ * while building it and never while invoking a method.
+ *
+ * The table also keeps the {@link RecordBinding}s of the interface, one for every schema
+ * instance records of the interface have been created with.
+ *
+ * @author Daan Gerits
+ */
+final class DispatchTable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DispatchTable.class);
+
+	private static final ClassValue<DispatchTable> TABLES = new ClassValue<>() {
+		@Override
+		protected DispatchTable computeValue(Class<?> type) {
+			// -- classes generated at compile time come with a table of their own
+			RecordProvider<?> provider = GeneratedRecords.provider(type);
+			if (provider != null) {
+				return provider.definition().table();
+			}
+
+			return new DispatchTable(type);
+		}
+	};
+
+	// -- bindings are dropped all at once when schemas keep on coming, avoiding unbounded growth
+	private static final int MAX_BINDINGS = 256;
+
+	private final Class<?> recordClass;
+
+	private final Map<Method, RecordAccessor> accessors = new HashMap<>();
+
+	private final List<Method> methods = new ArrayList<>();
+
+	private final List<RecordAccessor> indexedAccessors;
+
+	private final Map<String, RecordField> fields;
+
+	private final Map<String, RecordAccessor.Setter> setters = new HashMap<>();
+
+	// -- the getter of every field, used to validate bindings
+	private final Map<RecordField, RecordAccessor.Getter> getters = new HashMap<>();
+
+	// -- copy on write, keyed by schema identity
+	private volatile Map<Schema, RecordBinding> bindings = new IdentityHashMap<>();
+
+	// -- the reflective table used by proxies of interfaces which come with a table of their own
+	private volatile DispatchTable proxyTable;
+
+	private DispatchTable(Class<?> recordClass) {
+		this.recordClass = recordClass;
+		this.fields = new LinkedHashMap<>();
+
+		// -- the proxy passes the methods of java.lang.Object as declared by Object itself
+		for (Method method : Object.class.getMethods()) {
+			if (isObjectMethod(method)) {
+				accessors.put(method, resolve(method));
+			}
+		}
+
+		for (Method method : recordClass.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+
+			RecordAccessor accessor = resolve(method);
+			accessors.put(method, accessor);
+			methods.add(method);
+
+			if (accessor instanceof RecordAccessor.Setter setter) {
+				setters.putIfAbsent(setter.field.name(), setter);
+			}
+			addGetter(accessor);
+		}
+
+		this.indexedAccessors = List.of();
+	}
+
+	/**
+	 * Create a table from accessors defined up front, without inspecting the interface.
+	 * Accessors of such a table are retrieved by their index.
+	 * @param recordClass the dynamic record interface
+	 * @param fields the fields of the interface
+	 * @param indexedAccessors the accessors of the interface
+	 */
+	DispatchTable(Class<?> recordClass, Map<String, RecordField> fields, List<RecordAccessor> indexedAccessors) {
+		this.recordClass = recordClass;
+		this.fields = fields;
+		this.indexedAccessors = indexedAccessors;
+
+		for (RecordAccessor accessor : indexedAccessors) {
+			if (accessor instanceof RecordAccessor.Setter setter) {
+				setters.putIfAbsent(setter.field.name(), setter);
+			}
+			addGetter(accessor);
+		}
+	}
+
+	private void addGetter(RecordAccessor accessor) {
+		if (accessor instanceof RecordAccessor.Getter getter) {
+			getters.put(getter.field, getter);
+		}
+		else if (accessor instanceof RecordAccessor.Adder adder) {
+			getters.putIfAbsent(adder.getter.field, adder.getter);
+		}
+		else if (accessor instanceof RecordAccessor.Putter putter) {
+			getters.putIfAbsent(putter.getter.field, putter.getter);
+		}
+		else if (accessor instanceof RecordAccessor.Remover remover) {
+			getters.putIfAbsent(remover.getter.field, remover.getter);
+		}
+	}
+
+	/**
+	 * Retrieve the dispatch table for the given interface, building it if needed.
+	 * @param recordClass the dynamic record interface
+	 * @return the dispatch table for the interface
+	 */
+	static DispatchTable forClass(Class<?> recordClass) {
+		return TABLES.get(recordClass);
+	}
+
+	Class<?> recordClass() {
+		return recordClass;
+	}
+
+	/**
+	 * The table resolving the methods invoked on proxies of the interface. Tables defined
+	 * up front only know their accessors by index, so proxies of their interface, which
+	 * can still be created by hand, use a table built through reflection instead.
+	 * @return the table to use for proxies
+	 */
+	DispatchTable forProxies() {
+		if (indexedAccessors.isEmpty()) {
+			return this;
+		}
+
+		DispatchTable table = proxyTable;
+		if (table == null) {
+			synchronized (this) {
+				table = proxyTable;
+				if (table == null) {
+					table = new DispatchTable(recordClass);
+					proxyTable = table;
+				}
+			}
+		}
+
+		return table;
+	}
+
+	/**
+	 * The non-static methods of the interface, in a stable order.
+	 * @return the methods of the interface
+	 */
+	List<Method> methods() {
+		return Collections.unmodifiableList(methods);
+	}
+
+	/**
+	 * The number of distinct avro fields the interface refers to.
+	 * @return the number of fields
+	 */
+	int fieldCount() {
+		return fields.size();
+	}
+
+	/**
+	 * The avro names of the fields the interface refers to.
+	 * @return the field names
+	 */
+	Set<String> fieldNames() {
+		return Collections.unmodifiableSet(fields.keySet());
+	}
+
+	RecordAccessor accessorAt(int index) {
+		return indexedAccessors.get(index);
+	}
+
+	/**
+	 * Retrieve the setter of a field.
+	 * @param fieldName the avro name of the field
+	 * @return the setter of the field or null if the interface has none
+	 */
+	RecordAccessor.Setter setter(String fieldName) {
+		return setters.get(fieldName);
+	}
+
+	/**
+	 * Retrieve the binding of the interface fields onto the given schema, creating it if
+	 * needed. Schemas are compared by identity.
+	 * @param schema the schema of the record
+	 * @return the binding for the schema
+	 */
+	RecordBinding binding(Schema schema) {
+		RecordBinding binding = bindings.get(schema);
+		if (binding != null) {
+			return binding;
+		}
+
+		synchronized (this) {
+			binding = bindings.get(schema);
+			if (binding == null) {
+				binding = new RecordBinding(schema, fields.values(), getters, setters.values());
+				if (!binding.trusted()) {
+					logger.debug("{} doesn't match {}: {}", recordClass.getName(), schema.getFullName(),
+							binding.problems());
+				}
+
+				Map<Schema, RecordBinding> updated = (bindings.size() < MAX_BINDINGS)
+						? new IdentityHashMap<>(bindings) : new IdentityHashMap<>();
+				updated.put(schema, binding);
+				bindings = updated;
+			}
+
+			return binding;
+		}
+	}
+
+	/**
+	 * Validate the interface against the given schema, reporting all problems at once.
+	 * @param schema the schema to validate against
+	 * @throws ValueMappingException if the interface doesn't match the schema
+	 */
+	void validate(Schema schema) throws ValueMappingException {
+		RecordBinding binding = binding(schema);
+
+		if (!binding.trusted()) {
+			throw new ValueMappingException(recordClass.getName() + " doesn't match " + schema.getFullName() + ":\n - "
+					+ String.join("\n - ", binding.problems()));
+		}
+	}
+
+	RecordAccessor accessor(Method method) {
+		RecordAccessor accessor = accessors.get(method);
+		if (accessor == null) {
+			return new RecordAccessor.Unsupported(method.getName());
+		}
+
+		return accessor;
+	}
+
+	private RecordAccessor resolve(Method method) {
+		String name = method.getName();
+
+		if (name.startsWith("get")) {
+			return getter(method, "get");
+		}
+		else if (name.startsWith("is")) {
+			return getter(method, "is");
+		}
+		else if (name.startsWith("set")) {
+			if (method.getParameterCount() != 1) {
+				return new RecordAccessor.Unsupported(name);
+			}
+
+			return new RecordAccessor.Setter(field(method, "set"), method);
+		}
+		else if (name.startsWith("addTo")) {
+			return collectionAccessor(method, "addTo");
+		}
+		else if (name.startsWith("putInto")) {
+			return collectionAccessor(method, "putInto");
+		}
+		else if (name.startsWith("removeFrom")) {
+			return collectionAccessor(method, "removeFrom");
+		}
+		else if (name.equals("record")) {
+			return new RecordAccessor.RecordGetter();
+		}
+		else if (name.equals("retrieveDirect")) {
+			return new RecordAccessor.DirectRetriever();
+		}
+		else if (name.equals("manipulateDirect")) {
+			return new RecordAccessor.DirectManipulator();
+		}
+		else if (name.equals("equals")) {
+			return new RecordAccessor.Equals();
+		}
+		else if (name.equals("hashCode")) {
+			return new RecordAccessor.HashCode();
+		}
+		else if (name.equals("toString")) {
+			return new RecordAccessor.ToString();
+		}
+
+		return new RecordAccessor.Unsupported(name);
+	}
+
+	private RecordAccessor.Getter getter(Method method, String prefix) {
+		return new RecordAccessor.Getter(field(method, prefix), method);
+	}
+
+	private RecordAccessor collectionAccessor(Method method, String prefix) {
+		RecordAccessor.Getter getter;
+		RecordAccessor.Setter setter;
+		try {
+			Method getterMethod = getterForMethod(method, prefix);
+			Method setterMethod = setterForGetter(getterMethod);
+
+			getter = getter(getterMethod, "get");
+			setter = new RecordAccessor.Setter(getter.field, setterMethod);
+		}
+		catch (NoSuchMethodException ex) {
+			return new RecordAccessor.Failing(ex);
+		}
+
+		return collectionAccessor(prefix, getter, setter);
+	}
+
+	static RecordAccessor collectionAccessor(String prefix, RecordAccessor.Getter getter,
+			RecordAccessor.Setter setter) {
+		return switch (prefix) {
+		case "addTo" -> new RecordAccessor.Adder(getter, setter);
+		case "putInto" -> new RecordAccessor.Putter(getter, setter);
+		default -> new RecordAccessor.Remover(getter, setter);
+		};
+	}
+
+	private RecordField field(Method method, String prefix) {
+		return field(fields, DyreUtils.getFieldName(method, prefix));
+	}
+
+	static RecordField field(Map<String, RecordField> fields, String fieldName) {
+		return fields.computeIfAbsent(fieldName, (n) -> new RecordField(fields.size(), n));
+	}
+
+	private Method getterForMethod(Method calledMethod, String prefix) throws NoSuchMethodException {
+		String methodName = calledMethod.getName().replaceFirst(prefix, "get");
+		return recordClass.getMethod(methodName);
+	}
+
+	private Method setterForGetter(Method getter) throws NoSuchMethodException {
+		String methodName = getter.getName().replaceFirst("get", "set");
+		return recordClass.getMethod(methodName, getter.getReturnType());
+	}
+
+	private static boolean isObjectMethod(Method method) {
+		return switch (method.getName()) {
+		case "equals", "hashCode", "toString" -> !Modifier.isFinal(method.getModifiers());
+		default -> false;
+		};
+	}
+
+}
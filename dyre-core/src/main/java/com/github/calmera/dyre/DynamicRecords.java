@@ -18,11 +18,8 @@ package com.github.calmera.dyre;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import io.confluent.kafka.schemaregistry.ParsedSchema;
 import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
@@ -33,10 +30,9 @@ import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.GenericRecordBuilder;
 
 import com.github.calmera.dyre.annotations.DyreRecord;
+import com.github.calmera.dyre.decoders.ValueDecoder;
 import com.github.calmera.dyre.encoders.ValueEncoder;
 
-import static org.apache.commons.lang3.StringUtils.capitalize;
-
 /**
  * @author Daan Gerits
  * @author Tim Ysewyn
@@ -55,8 +51,62 @@ public class DynamicRecords {
 
 	private final SchemaRegistryClient schemaRegistryClient;
 
+	private final ValueDecoder valueDecoder;
+
+	private final boolean cacheValues;
+
+	/**
+	 * Apply a batch of changes to a record. The values set by the editor are staged and
+	 * only encoded into the record once the editor returns, either all of them or, if one
+	 * of them can't be encoded, none of them. Getters called by the editor return the
+	 * staged values.
+	 *
+	 * <pre>
+	 * DynamicRecords.edit(person, p -&gt; {
+	 *     p.setName("Daan");
+	 *     p.addToTags("dyre");
+	 * });
+	 * </pre>
+	 * @param record the record to edit
+	 * @param editor the editor making the changes
+	 * @param <T> the type of the record
+	 * @throws ValueMappingException if one of the staged values can't be encoded
+	 */
+	public static <T extends DynamicRecord> void edit(T record, Consumer<? super T> editor)
+			throws ValueMappingException {
+		GenericRecordInvocationHandler handler = GenericRecordInvocationHandler.of(record);
+		if (handler == null) {
+			throw new IllegalArgumentException(record.getClass().getName() + " is not backed by a generic record");
+		}
+
+		handler.edit(record, editor);
+	}
+
 	public DynamicRecords(SchemaRegistryClient schemaRegistryClient) {
+		this(schemaRegistryClient, false);
+	}
+
+	/**
+	 * @param schemaRegistryClient the client retrieving the schemas of new records
+	 * @param cacheValues true to let the records created by this instance cache the values
+	 * decoded by their getters
+	 */
+	public DynamicRecords(SchemaRegistryClient schemaRegistryClient, boolean cacheValues) {
+		this(schemaRegistryClient, ValueDecoder.DEFAULT_DECODER, cacheValues);
+	}
+
+	/**
+	 * @param schemaRegistryClient the client retrieving the schemas of new records
+	 * @param valueDecoder the decoder used by the getters of the records created by this
+	 * instance, like a {@link com.github.calmera.dyre.decoders.LazyValueDecoder}
+	 * @param cacheValues true to let the records created by this instance cache the values
+	 * decoded by their getters
+	 */
+	public DynamicRecords(SchemaRegistryClient schemaRegistryClient, ValueDecoder valueDecoder,
+			boolean cacheValues) {
 		this.schemaRegistryClient = schemaRegistryClient;
+		this.valueDecoder = valueDecoder;
+		this.cacheValues = cacheValues;
 		instance = this;
 	}
 
@@ -93,22 +143,22 @@ public class DynamicRecords {
 				}
 
 				Schema fieldSchema = schema.getField(avroFieldName).schema();
-				Method fieldSetter = setterForClass(cls, javaFieldName);
+				RecordAccessor.Setter fieldSetter = DispatchTable.forClass(cls).setter(avroFieldName);
 
 				// TODO: We are using the default value encoder here, but we might want to
 				// make this configurable
 				builder.set(avroFieldName, ValueEncoder.DEFAULT_ENCODER.encode(fieldSchema, o,
-						(fieldSetter != null) ? fieldSetter.getAnnotations() : new Annotation[] {}));
+						(fieldSetter != null) ? fieldSetter.annotations : new Annotation[] {}));
 			}
-			catch (ValueMappingException | NoSuchMethodException ex) {
+			catch (ValueMappingException ex) {
 				throw new RuntimeException(ex);
 			}
 		});
 
 		GenericRecord gr = builder.build();
 
-		return (T) Proxy.newProxyInstance(cls.getClassLoader(), new Class<?>[] { cls },
-				new GenericRecordInvocationHandler(gr));
+		return RecordFactory.wrap(cls,
+				new GenericRecordInvocationHandler(gr, valueDecoder, ValueEncoder.DEFAULT_ENCODER, cacheValues));
 	}
 
 	public <T extends DynamicRecord> T newRecordFromSubject(Class<T> cls, String subject,
@@ -129,18 +179,4 @@ public class DynamicRecords {
 		}
 	}
 
-	private Method setterForClass(Class<?> cls, String fieldName) throws NoSuchMethodException {
-		String methodName = String.format("set%s", capitalize(fieldName));
-		List<Method> methods = Arrays.stream(cls.getMethods()).filter((m) -> m.getName().equals(methodName)).toList();
-
-		if (methods.size() > 1) {
-			throw new UnsupportedOperationException("more than one setter has been found for field " + fieldName);
-		}
-		else if (methods.isEmpty()) {
-			return null;
-		}
-
-		return methods.get(0);
-	}
-
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.github.calmera.dyre.annotations.DyreField;
+import com.google.common.base.CaseFormat;
+
+/**
+ * @author Daan Gerits
+ */
+public abstract class DyreUtils {
+
+	public static <T extends Annotation> T annotation(Annotation[] annotations, Class<T> annoCls) {
+		for (Annotation anno : annotations) {
+			if (annoCls.isAssignableFrom(anno.annotationType())) {
+				return (T) anno;
+			}
+		}
+
+		return null;
+	}
+
+	public static <T> T expectType(Class<T> expected, Object obj) throws ValueMappingException {
+		if (obj == null) {
+			return null;
+		}
+
+		if (!expected.isAssignableFrom(obj.getClass())) {
+			throw new ValueMappingException(
+					"expected a " + expected.getName() + " but received a " + obj.getClass().getName());
+		}
+
+		return (T) obj;
+	}
+
+	public static DyreField dyreField(Class<?> cls, boolean required) {
+		return dyreField(cls, required, 0, 0, 0);
+	}
+
+	public static DyreField dyreField(Class<?> cls, boolean required, int precision, int scale, int size) {
+		return new DyreField() {
+
+			@Override
+			public boolean required() {
+				return required;
+			}
+
+			@Override
+			public int precision() {
+				return precision;
+			}
+
+			@Override
+			public int scale() {
+				return scale;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Class<? extends Annotation> annotationType() {
+				return DyreField.class;
+			}
+		};
+	}
+
+	/**
+	 * Create a parameterized type without reflecting on a declaration. The result is equal to
+	 * the parameterized type the JVM reports for the same declaration.
+	 * @param rawType the raw type
+	 * @param typeArguments the actual type arguments
+	 * @return the parameterized type
+	 */
+	public static ParameterizedType parameterizedType(Class<?> rawType, Type... typeArguments) {
+		return new SimpleParameterizedType(rawType, typeArguments);
+	}
+
+	public static String getFieldName(Method method, String prefix) {
+		String field = method.getName().substring(prefix.length());
+
+		// -- change the field from camel case to snake case
+		return getFieldName(field);
+	}
+
+	public static String getFieldName(String input) {
+		return CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, input);
+	}
+
+	private record SimpleParameterizedType(Class<?> rawType, Type[] typeArguments) implements ParameterizedType {
+
+		@Override
+		public Type[] getActualTypeArguments() {
+			return typeArguments.clone();
+		}
+
+		@Override
+		public Type getRawType() {
+			return rawType;
+		}
+
+		@Override
+		public Type getOwnerType() {
+			return rawType.getDeclaringClass();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ParameterizedType other)) {
+				return false;
+			}
+
+			return rawType.equals(other.getRawType()) && Objects.equals(getOwnerType(), other.getOwnerType())
+					&& Arrays.equals(typeArguments, other.getActualTypeArguments());
+		}
+
+		@Override
+		public int hashCode() {
+			// -- consistent with the parameterized types of the JVM
+			return Arrays.hashCode(typeArguments) ^ Objects.hashCode(getOwnerType()) ^ rawType.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return getTypeName();
+		}
+
+		@Override
+		public String getTypeName() {
+			StringBuilder sb = new StringBuilder(rawType.getName()).append('<');
+			for (int i = 0; i < typeArguments.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(typeArguments[i].getTypeName());
+			}
+
+			return sb.append('>').toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps the constants of a java enum onto the symbols of an avro enum schema and back.
+ * The mapping is resolved once for every combination of enum class and schema instance,
+ * holding a shared {@link GenericData.EnumSymbol} for every constant. Symbols and
+ * constants without a counterpart are reported when the mapping is built.
+ *
+ * @author Daan Gerits
+ */
+public final class EnumMapping<E extends Enum<E>> {
+
+	private static final Logger logger = LoggerFactory.getLogger(EnumMapping.class);
+
+	// -- mappings are dropped all at once when schemas keep on coming, avoiding unbounded
+	// -- growth
+	private static final int MAX_MAPPINGS = 256;
+
+	private static final ClassValue<Mappings> MAPPINGS = new ClassValue<>() {
+		@Override
+		protected Mappings computeValue(Class<?> type) {
+			return new Mappings();
+		}
+	};
+
+	private final Class<E> enumClass;
+
+	private final Schema schema;
+
+	// -- indexed by the ordinal of the constant, null if the schema lacks the constant
+	private final GenericData.EnumSymbol[] symbols;
+
+	private final Map<String, E> constants = new HashMap<>();
+
+	// -- the constants of the shared symbols, looked up without hashing the symbol names
+	private final Map<GenericData.EnumSymbol, E> symbolConstants = new IdentityHashMap<>();
+
+	private final List<String> mismatches = new ArrayList<>();
+
+	private EnumMapping(Class<E> enumClass, Schema schema) {
+		this.enumClass = enumClass;
+		this.schema = schema;
+
+		E[] enumConstants = enumClass.getEnumConstants();
+		this.symbols = new GenericData.EnumSymbol[enumConstants.length];
+		for (E constant : enumConstants) {
+			if (schema.hasEnumSymbol(constant.name())) {
+				symbols[constant.ordinal()] = new GenericData.EnumSymbol(schema, constant.name());
+				constants.put(constant.name(), constant);
+				symbolConstants.put(symbols[constant.ordinal()], constant);
+			}
+			else {
+				mismatches.add("constant " + constant.name() + " is not a symbol of " + schema.getFullName());
+			}
+		}
+
+		for (String symbol : schema.getEnumSymbols()) {
+			if (!constants.containsKey(symbol)) {
+				mismatches.add("symbol " + symbol + " is not a constant of " + enumClass.getName());
+			}
+		}
+
+		if (!mismatches.isEmpty()) {
+			logger.warn("enum {} doesn't match schema {}: {}", enumClass.getName(), schema.getFullName(),
+					String.join(", ", mismatches));
+		}
+	}
+
+	/**
+	 * Retrieve the mapping between an enum class and an enum schema.
+	 * @param enumClass the java enum
+	 * @param schema the avro enum schema
+	 * @param <E> the type of the enum
+	 * @return the mapping, shared by all callers using the same schema instance
+	 */
+	public static <E extends Enum<E>> EnumMapping<E> of(Class<E> enumClass, Schema schema) {
+		return (EnumMapping<E>) MAPPINGS.get(enumClass).mapping(enumClass, schema);
+	}
+
+	public Class<E> enumClass() {
+		return enumClass;
+	}
+
+	public Schema schema() {
+		return schema;
+	}
+
+	/**
+	 * The symbols and constants without a counterpart.
+	 * @return a description of every mismatch, empty if the enum matches the schema
+	 */
+	public List<String> mismatches() {
+		return Collections.unmodifiableList(mismatches);
+	}
+
+	/**
+	 * Encode an enum constant.
+	 * @param constant the constant to encode
+	 * @return the shared symbol of the constant
+	 * @throws ValueMappingException if the schema lacks the constant
+	 */
+	public GenericData.EnumSymbol symbol(E constant) throws ValueMappingException {
+		GenericData.EnumSymbol symbol = symbols[constant.ordinal()];
+		if (symbol == null) {
+			throw new ValueMappingException(
+					"constant " + constant.name() + " is not a symbol of " + schema.getFullName());
+		}
+
+		return symbol;
+	}
+
+	/**
+	 * Decode an enum symbol. The shared symbols handed out by {@link #symbol(Enum)} are
+	 * resolved by their identity, any other symbol by its name.
+	 * @param symbol the symbol, as a {@link GenericData.EnumSymbol} or a string
+	 * @return the constant of the symbol
+	 * @throws ValueMappingException if the enum lacks the symbol
+	 */
+	public E constant(Object symbol) throws ValueMappingException {
+		E constant = symbolConstants.get(symbol);
+		if (constant != null) {
+			return constant;
+		}
+
+		constant = constants.get(symbol.toString());
+		if (constant == null) {
+			throw new ValueMappingException("symbol " + symbol + " is not a constant of " + enumClass.getName());
+		}
+
+		return constant;
+	}
+
+	/**
+	 * The mappings of one enum class, keyed by schema identity.
+	 */
+	private static final class Mappings {
+
+		// -- copy on write
+		private volatile Map<Schema, EnumMapping<?>> mappings = new IdentityHashMap<>();
+
+		<E extends Enum<E>> EnumMapping<?> mapping(Class<E> enumClass, Schema schema) {
+			EnumMapping<?> mapping = mappings.get(schema);
+			if (mapping != null) {
+				return mapping;
+			}
+
+			synchronized (this) {
+				mapping = mappings.get(schema);
+				if (mapping == null) {
+					mapping = new EnumMapping<>(enumClass, schema);
+
+					Map<Schema, EnumMapping<?>> updated = (mappings.size() < MAX_MAPPINGS)
+							? new IdentityHashMap<>(mappings) : new IdentityHashMap<>();
+					updated.put(schema, mapping);
+					mappings = updated;
+				}
+
+				return mapping;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the decoded values of the fields of a single record, one slot per field of the
+ * record interface. A cached value is only handed out if it has been decoded by the same
+ * getter, from the very same raw value the record currently holds, so values replaced on
+ * the generic record behind the back of the handler are detected.
+ *
+ * Hits and misses are counted per record interface, when asked to.
+ *
+ * @author Daan Gerits
+ */
+final class FieldValueCache {
+
+	private static final ClassValue<Statistics> STATISTICS = new ClassValue<>() {
+		@Override
+		protected Statistics computeValue(Class<?> type) {
+			return new Statistics();
+		}
+	};
+
+	// -- null when not counting
+	private final Statistics statistics;
+
+	private final RecordAccessor.Getter[] getters;
+
+	private final Object[] rawValues;
+
+	private final Object[] values;
+
+	FieldValueCache(int size, Statistics statistics) {
+		this.statistics = statistics;
+		this.getters = new RecordAccessor.Getter[size];
+		this.rawValues = new Object[size];
+		this.values = new Object[size];
+	}
+
+	/**
+	 * Check if the cache holds the value decoded by the getter from the given raw value,
+	 * keeping track of the hits and misses if asked to.
+	 * @param getter the getter of the field
+	 * @param rawValue the raw value currently held by the record
+	 * @return true if the cached value can be used
+	 */
+	boolean holds(RecordAccessor.Getter getter, Object rawValue) {
+		int slot = getter.field.slot();
+
+		if (getters[slot] == getter && rawValues[slot] == rawValue) {
+			if (statistics != null) {
+				statistics.hits.increment();
+			}
+			return true;
+		}
+
+		if (statistics != null) {
+			statistics.misses.increment();
+		}
+		return false;
+	}
+
+	/**
+	 * The hits and misses of the caches of all records of an interface.
+	 * @param recordClass the record interface
+	 * @return the statistics of the interface
+	 */
+	static Statistics statistics(Class<?> recordClass) {
+		return STATISTICS.get(recordClass);
+	}
+
+	Object value(RecordAccessor.Getter getter) {
+		return values[getter.field.slot()];
+	}
+
+	void put(RecordAccessor.Getter getter, Object rawValue, Object value) {
+		int slot = getter.field.slot();
+
+		getters[slot] = getter;
+		rawValues[slot] = rawValue;
+		values[slot] = value;
+	}
+
+	void invalidate(RecordField field) {
+		int slot = field.slot();
+
+		getters[slot] = null;
+		rawValues[slot] = null;
+		values[slot] = null;
+	}
+
+	static final class Statistics {
+
+		final LongAdder hits = new LongAdder();
+
+		final LongAdder misses = new LongAdder();
+
+	}
+
+}
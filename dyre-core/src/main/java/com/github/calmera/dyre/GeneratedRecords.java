@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the {@link RecordProvider}s found on the classpath.
+ *
+ * @author Daan Gerits
+ */
+final class GeneratedRecords {
+
+	private static final Logger logger = LoggerFactory.getLogger(GeneratedRecords.class);
+
+	private static final ClassValue<RecordProvider<?>> PROVIDERS = new ClassValue<>() {
+		@Override
+		protected RecordProvider<?> computeValue(Class<?> type) {
+			return Registry.PROVIDERS.get(type);
+		}
+	};
+
+	private GeneratedRecords() {
+	}
+
+	/**
+	 * Retrieve the provider of the given record interface.
+	 * @param recordClass the record interface
+	 * @param <T> the type of the record interface
+	 * @return the provider of the record interface or null if no implementation has been
+	 * generated for it
+	 */
+	static <T extends DynamicRecord> RecordProvider<T> provider(Class<?> recordClass) {
+		return (RecordProvider<T>) PROVIDERS.get(recordClass);
+	}
+
+	/**
+	 * Holder loading the providers on first use.
+	 */
+	private static final class Registry {
+
+		private static final Map<Class<?>, RecordProvider<?>> PROVIDERS = load();
+
+		private static Map<Class<?>, RecordProvider<?>> load() {
+			Map<Class<?>, RecordProvider<?>> result = new HashMap<>();
+
+			load(result, RecordProvider.class.getClassLoader());
+			load(result, Thread.currentThread().getContextClassLoader());
+
+			return result;
+		}
+
+		private static void load(Map<Class<?>, RecordProvider<?>> result, ClassLoader classLoader) {
+			try {
+				for (RecordProvider<?> provider : ServiceLoader.load(RecordProvider.class, classLoader)) {
+					result.putIfAbsent(provider.recordClass(), provider);
+				}
+			}
+			catch (ServiceConfigurationError sce) {
+				logger.warn("unable to load the generated record providers", sce);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,664 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+
+import com.github.calmera.dyre.decoders.ValueDecoder;
+import com.github.calmera.dyre.encoders.ValueEncoder;
+
+/**
+ * Maps the methods of a {@link DynamicRecord} interface onto a {@link GenericRecord}.
+ *
+ * Nested records returned by a getter are created once and handed out again for as long as
+ * the field isn't modified, which keeps them identity-stable.
+ *
+ * The addTo, putInto and removeFrom methods modify the avro array or map held by the record
+ * in place, only encoding the value being added.
+ *
+ * While a record is being edited through {@link DynamicRecords#edit(DynamicRecord, Consumer)},
+ * writes are staged instead of being applied to the record, and getters return the staged
+ * values. The staged values are encoded and applied all at once when the edit completes.
+ *
+ * Handlers can memoize the values decoded by the other getters of the interface as well,
+ * which avoids decoding the same field over and over again when a record is read many
+ * times. Value caching is disabled by default; enable it through the constructor of the
+ * handler, or for the records created by a {@link DynamicRecords} instance or a
+ * deserializer through their configuration. Cached values are invalidated whenever the
+ * field is modified through the interface.
+ *
+ * Handlers of records decoded from a message may hold on to that {@link RecordSource},
+ * allowing serializers to write the message as is instead of encoding the record again.
+ * The source is dropped as soon as the record might have been modified: when a field is
+ * written, when the generic record is handed out, or when a field holding nested records
+ * or binary values is read, or a getter hands out the {@link org.apache.avro.util.Utf8}
+ * strings of the record as is, since those values can be modified behind the back of the
+ * handler.
+ *
+ * @author Daan Gerits
+ * @author Tim Ysewyn
+ */
+public class GenericRecordInvocationHandler implements InvocationHandler {
+
+	private static final Schema KEY_SCHEMA = Schema.create(Schema.Type.STRING);
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[] {};
+
+	// -- lazy records are replaced by their materialized form once handed out
+	private GenericRecord record;
+
+	private final ValueDecoder valueDecoder;
+
+	private final ValueEncoder valueEncoder;
+
+	private DispatchTable dispatchTable;
+
+	private RecordBinding binding;
+
+	private final boolean cacheValues;
+
+	private FieldValueCache valueCache;
+
+	private RecordEdit edit;
+
+	private RecordSource source;
+
+	// -- the values the handler allocated itself, which it may write into as long as they aren't shared
+	private Object[] ownedValues;
+
+	private boolean ownsValues = true;
+
+	public GenericRecordInvocationHandler(GenericRecord record) {
+		this(record, ValueDecoder.DEFAULT_DECODER, ValueEncoder.DEFAULT_ENCODER);
+	}
+
+	public GenericRecordInvocationHandler(GenericRecord record, ValueDecoder valueDecoder, ValueEncoder valueEncoder) {
+		this(record, valueDecoder, valueEncoder, false);
+	}
+
+	public GenericRecordInvocationHandler(GenericRecord record, ValueDecoder valueDecoder, ValueEncoder valueEncoder,
+			boolean cacheValues) {
+		this.record = record;
+		this.valueDecoder = valueDecoder;
+		this.valueEncoder = valueEncoder;
+		this.cacheValues = cacheValues;
+	}
+
+	/**
+	 * Create the handler of a record nested within another record. The enclosing record
+	 * may be handed out without the handler knowing, so the handler never writes into the
+	 * values the nested record holds.
+	 * @param record the nested record
+	 * @param valueDecoder the decoder of the enclosing record
+	 * @return the handler
+	 */
+	public static GenericRecordInvocationHandler forNestedRecord(GenericRecord record, ValueDecoder valueDecoder) {
+		GenericRecordInvocationHandler handler = new GenericRecordInvocationHandler(record, valueDecoder,
+				ValueEncoder.DEFAULT_ENCODER);
+		handler.ownsValues = false;
+
+		return handler;
+	}
+
+	/**
+	 * The number of getter invocations served from the value cache, across all records of
+	 * the interface.
+	 * @param recordClass the record interface
+	 * @return the number of cache hits
+	 */
+	public static long getValueCacheHits(Class<? extends DynamicRecord> recordClass) {
+		return FieldValueCache.statistics(recordClass).hits.sum();
+	}
+
+	/**
+	 * The number of getter invocations which had to decode the value while caching values,
+	 * across all records of the interface.
+	 * @param recordClass the record interface
+	 * @return the number of cache misses
+	 */
+	public static long getValueCacheMisses(Class<? extends DynamicRecord> recordClass) {
+		return FieldValueCache.statistics(recordClass).misses.sum();
+	}
+
+	public static void resetValueCacheStatistics(Class<? extends DynamicRecord> recordClass) {
+		FieldValueCache.Statistics statistics = FieldValueCache.statistics(recordClass);
+		statistics.hits.reset();
+		statistics.misses.reset();
+	}
+
+	/**
+	 * The handler backing a record.
+	 * @param record the record, either a proxy or a generated record
+	 * @return the handler, or null if the record isn't backed by a handler
+	 */
+	static GenericRecordInvocationHandler of(Object record) {
+		if (record instanceof AbstractDynamicRecord generated) {
+			return generated.handler;
+		}
+
+		if (record != null && Proxy.isProxyClass(record.getClass())
+				&& Proxy.getInvocationHandler(record) instanceof GenericRecordInvocationHandler handler) {
+			return handler;
+		}
+
+		return null;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		DispatchTable table = dispatchTable;
+		if (table == null) {
+			// -- resolved on the first invocation since the handler is created before the proxy
+			table = DispatchTable.forClass(proxy.getClass().getInterfaces()[0]).forProxies();
+			dispatchTable = table;
+		}
+
+		return table.accessor(method).invoke(this, proxy, args);
+	}
+
+	/**
+	 * Binds the handler to the dispatch table of the interface it is backing. Handlers
+	 * used by a proxy are bound on their first invocation instead.
+	 * @param table the dispatch table of the record interface
+	 */
+	void bind(DispatchTable table) {
+		if (table != dispatchTable) {
+			this.dispatchTable = table;
+			this.binding = null;
+			this.valueCache = null;
+		}
+	}
+
+	/**
+	 * Binds the handler to the dispatch table of the interface it is backing, together with
+	 * the binding of the interface onto the schema of the record.
+	 * @param table the dispatch table of the record interface
+	 * @param binding the binding resolved by the table for the schema of the record
+	 */
+	void bind(DispatchTable table, RecordBinding binding) {
+		bind(table);
+		this.binding = binding;
+	}
+
+	GenericRecord record() {
+		if (record instanceof LazyRecord lazy) {
+			record = lazy.materialize();
+		}
+
+		return record;
+	}
+
+	/**
+	 * The schema of the record, without materializing lazy records.
+	 * @return the schema of the record
+	 */
+	Schema schema() {
+		return record.getSchema();
+	}
+
+	/**
+	 * The record handed out to callers, who might modify it without the handler knowing.
+	 * @return the generic record
+	 */
+	GenericRecord exposeRecord() {
+		source = null;
+		ownedValues = null;
+		return record();
+	}
+
+	/**
+	 * The message the record has been decoded from.
+	 * @return the source, or null if the record might have been modified since
+	 */
+	RecordSource source() {
+		return source;
+	}
+
+	void source(RecordSource source) {
+		this.source = source;
+	}
+
+	void addValueToField(RecordAccessor.Getter getter, RecordAccessor.Setter setter, Object valueToAdd)
+			throws ValueMappingException {
+		if (edit != null) {
+			workingList(getter, setter).add(valueToAdd);
+			return;
+		}
+
+		RecordBinding binding = binding();
+		int position = position(binding, setter.field);
+		Schema arraySchema = collectionSchema(binding.fieldSchema(setter.field), Schema.Type.ARRAY, "list", setter);
+		Object fieldValue = record.get(position);
+
+		if ((fieldValue != null) && (!(fieldValue instanceof List))) {
+			throw new IllegalArgumentException("value of field " + getter.field + " is not a list");
+		}
+
+		Object element = valueEncoder.encode(arraySchema.getElementType(), valueToAdd, setter.annotations);
+
+		GenericData.Array array = mutableArray(arraySchema, (List) fieldValue, position);
+		array.add(element);
+
+		invalidate(setter.field);
+	}
+
+	void putValueIntoField(RecordAccessor.Getter getter, RecordAccessor.Setter setter, String key, Object value)
+			throws ValueMappingException {
+		if (edit != null) {
+			workingMap(getter, setter).put(key, value);
+			return;
+		}
+
+		RecordBinding binding = binding();
+		int position = position(binding, setter.field);
+		Schema mapSchema = collectionSchema(binding.fieldSchema(setter.field), Schema.Type.MAP, "map", setter);
+		Object fieldValue = record.get(position);
+
+		if ((fieldValue != null) && (!(fieldValue instanceof Map))) {
+			throw new IllegalArgumentException("value of field " + getter.field + " is not a map");
+		}
+
+		Object encodedKey = valueEncoder.encode(KEY_SCHEMA, key, setter.annotations);
+		Object encodedValue = valueEncoder.encode(mapSchema.getValueType(), value, setter.annotations);
+
+		Map map = mutableMap((Map) fieldValue, position);
+		removeKey(map, key);
+		map.put(encodedKey, encodedValue);
+
+		invalidate(setter.field);
+	}
+
+	void removeFromField(RecordAccessor.Getter getter, RecordAccessor.Setter setter, Object itemOrKey)
+			throws ValueMappingException {
+		if (edit != null) {
+			List<Object> list = edit.workingList(setter.field);
+			Map<Object, Object> map = edit.workingMap(setter.field);
+			if (list != null) {
+				list.remove(itemOrKey);
+			}
+			else if (map != null) {
+				map.remove(itemOrKey);
+			}
+			else {
+				Object current = getFieldValue(getter);
+				if (current instanceof List l) {
+					edit.stageList(setter, l).remove(itemOrKey);
+				}
+				else if (current instanceof Map m) {
+					edit.stageMap(setter, m).remove(itemOrKey);
+				}
+			}
+			return;
+		}
+
+		RecordBinding binding = binding();
+		int position = position(binding, setter.field);
+		Object fieldValue = record.get(position);
+		if (fieldValue == null) {
+			return;
+		}
+
+		if (fieldValue instanceof List l) {
+			Schema arraySchema = collectionSchema(binding.fieldSchema(setter.field), Schema.Type.ARRAY, "list", setter);
+			int index = indexOf(getter, arraySchema, l, itemOrKey, setter.annotations);
+			if (index >= 0) {
+				mutableArray(arraySchema, l, position).remove(index);
+			}
+		}
+		else if (fieldValue instanceof Map m) {
+			if (itemOrKey != null) {
+				removeKey(mutableMap(m, position), itemOrKey);
+			}
+		}
+		else {
+			throw new IllegalArgumentException("value of field " + getter.field + " is not a map or list");
+		}
+
+		invalidate(setter.field);
+	}
+
+	/**
+	 * The working copy of the list edited within the running edit, decoding and copying the
+	 * current list only for the first operation on the field.
+	 */
+	private List<Object> workingList(RecordAccessor.Getter getter, RecordAccessor.Setter setter)
+			throws ValueMappingException {
+		List<Object> list = edit.workingList(setter.field);
+		if (list != null) {
+			return list;
+		}
+
+		return edit.stageList(setter, (getFieldValue(getter) instanceof List current) ? current : null);
+	}
+
+	/**
+	 * The working copy of the map edited within the running edit, decoding and copying the
+	 * current map only for the first operation on the field.
+	 */
+	private Map<Object, Object> workingMap(RecordAccessor.Getter getter, RecordAccessor.Setter setter)
+			throws ValueMappingException {
+		Map<Object, Object> map = edit.workingMap(setter.field);
+		if (map != null) {
+			return map;
+		}
+
+		return edit.stageMap(setter, (getFieldValue(getter) instanceof Map current) ? current : null);
+	}
+
+	/**
+	 * Find an item within the raw list, first by its encoded value and then by comparing
+	 * it to the decoded elements, since the list may hold differently encoded values, like
+	 * strings instead of utf8 values.
+	 */
+	private int indexOf(RecordAccessor.Getter getter, Schema arraySchema, List list, Object item,
+			Annotation[] annotations) throws ValueMappingException {
+		try {
+			int index = list.indexOf(valueEncoder.encode(arraySchema.getElementType(), item, annotations));
+			if (index >= 0) {
+				return index;
+			}
+		}
+		catch (ValueMappingException vme) {
+			// -- the item can't be encoded, but might still be equal to a decoded element
+		}
+
+		Type elementType = (getter.type instanceof ParameterizedType p) ? p.getActualTypeArguments()[0] : Object.class;
+		for (int i = 0; i < list.size(); i++) {
+			if (Objects.equals(item, valueDecoder.decode(elementType, list.get(i), NO_ANNOTATIONS))) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The array held by the record, replaced by a copy if it can't be modified in place.
+	 */
+	private GenericData.Array mutableArray(Schema arraySchema, List current, int position) {
+		if (current instanceof GenericData.Array array) {
+			return array;
+		}
+
+		GenericData.Array array = new GenericData.Array((current != null) ? current.size() + 1 : 1, arraySchema);
+		if (current != null) {
+			array.addAll(current);
+		}
+
+		record.put(position, array);
+		return array;
+	}
+
+	/**
+	 * The map held by the record, replaced by a copy if it can't be modified in place.
+	 */
+	private Map mutableMap(Map current, int position) {
+		if (current instanceof HashMap) {
+			return current;
+		}
+
+		Map map = (current != null) ? new HashMap(current) : new HashMap();
+		record.put(position, map);
+		return map;
+	}
+
+	/**
+	 * Remove a key from an avro map, which might use either utf8 or string keys.
+	 */
+	private static void removeKey(Map map, Object key) {
+		String name = (key instanceof Enum<?> e) ? e.name() : key.toString();
+
+		map.remove(name);
+		map.remove(new Utf8(name));
+	}
+
+	private static Schema collectionSchema(Schema fieldSchema, Schema.Type type, String description,
+			RecordAccessor.Setter setter) {
+		if (fieldSchema.getType() == type) {
+			return fieldSchema;
+		}
+
+		if (fieldSchema.getType() == Schema.Type.UNION) {
+			for (Schema branch : fieldSchema.getTypes()) {
+				if (branch.getType() == type) {
+					return branch;
+				}
+			}
+		}
+
+		throw new IllegalArgumentException("field " + setter.field + " is not a " + description);
+	}
+
+	private static int position(RecordBinding binding, RecordField field) {
+		int position = binding.position(field);
+		if (position < 0) {
+			throw new UnsupportedOperationException("no '" + field + "' field available on the record");
+		}
+
+		return position;
+	}
+
+	private boolean owns(RecordField field, Object value) {
+		return value != null && ownedValues != null && ownedValues[field.slot()] == value;
+	}
+
+	private void invalidate(RecordField field) {
+		source = null;
+
+		if (valueCache != null) {
+			valueCache.invalidate(field);
+		}
+	}
+
+	Object getFieldValue(RecordAccessor.Getter getter) throws UnsupportedOperationException, ValueMappingException {
+		RecordBinding binding = binding();
+		int position = position(binding, getter.field);
+
+		if (source != null && (binding.holdsMutableValues(getter.field) || getter.sharesStrings)) {
+			source = null;
+		}
+
+		if (edit != null && edit.isStaged(getter.field)) {
+			return edit.value(getter.field);
+		}
+
+		Object actualValue = record.get(position);
+
+		if (!cacheValues && !getter.nestedRecord) {
+			return decode(binding, getter, actualValue);
+		}
+
+		FieldValueCache cache = valueCache();
+
+		if (cache.holds(getter, actualValue)) {
+			return cache.value(getter);
+		}
+
+		Object value = decode(binding, getter, actualValue);
+		cache.put(getter, actualValue, value);
+
+		return value;
+	}
+
+	// -- trusted bindings guarantee the schema holds values of the type of the getter
+	private Object decode(RecordBinding binding, RecordAccessor.Getter getter, Object actualValue)
+			throws ValueMappingException {
+		Schema schema = binding.fieldSchema(getter.field);
+
+		return binding.trusted() ? valueDecoder.decodeTrusted(getter.type, schema, actualValue, getter.annotations)
+				: valueDecoder.decode(getter.type, schema, actualValue, getter.annotations);
+	}
+
+	void setFieldValue(RecordAccessor.Setter setter, Object newValue) throws ValueMappingException {
+		RecordBinding binding = binding();
+		int position = position(binding, setter.field);
+
+		if (edit != null) {
+			edit.stage(setter, newValue);
+			return;
+		}
+
+		// -- validated bindings skip checking values of the type of the setter and may reuse the current
+		// -- value, like the fixed of the field, if nothing else holds it
+		Object current = record.get(position);
+		Object toSet = (binding.trusted() && setter.type != Object.class)
+				? valueEncoder.encodeInto(binding.fieldSchema(setter.field), newValue,
+						owns(setter.field, current) ? current : null, setter.annotations)
+				: valueEncoder.encode(binding.fieldSchema(setter.field), newValue, setter.annotations);
+
+		record.put(position, toSet);
+
+		if (ownsValues && toSet != null) {
+			if (ownedValues == null) {
+				ownedValues = new Object[dispatchTable.fieldCount()];
+			}
+
+			ownedValues[setter.field.slot()] = toSet;
+		}
+
+		invalidate(setter.field);
+	}
+
+	/**
+	 * Read the value of a primitive getter. Primitive values are read from the record as
+	 * is, without going through the value decoder, unless they aren't of the type the
+	 * schema prescribes. Values of trusted bindings aren't checked at all.
+	 * @param getter the primitive getter
+	 * @return the boxed value held by the record
+	 * @throws ValueMappingException if the value can't be mapped to the primitive type
+	 */
+	Object getPrimitiveValue(RecordAccessor.Getter getter) throws ValueMappingException {
+		RecordBinding binding = binding();
+		Object value = record.get(position(binding, getter.field));
+
+		// -- trusted bindings guarantee the schema holds values of the primitive type
+		if (edit == null && (binding.trusted() || value == null || value.getClass() == binding.valueClass(getter.field))) {
+			return value;
+		}
+
+		return getFieldValue(getter);
+	}
+
+	/**
+	 * Write the value of a primitive setter. Primitive values are written into the record
+	 * as is, without going through the value encoder, if the schema of the field holds
+	 * values of that type. Values of trusted bindings aren't checked at all.
+	 * @param setter the primitive setter
+	 * @param newValue the boxed value to write
+	 * @throws ValueMappingException if the value can't be mapped to the field
+	 */
+	void setPrimitiveValue(RecordAccessor.Setter setter, Object newValue) throws ValueMappingException {
+		RecordBinding binding = binding();
+		int position = position(binding, setter.field);
+
+		// -- trusted bindings guarantee the schema holds values of the primitive type
+		if (edit == null && newValue != null
+				&& (binding.trusted() || newValue.getClass() == binding.valueClass(setter.field))) {
+			record.put(position, newValue);
+			invalidate(setter.field);
+			return;
+		}
+
+		setFieldValue(setter, newValue);
+	}
+
+	/**
+	 * Edit the record, staging all writes made by the editor and applying them at once
+	 * afterwards. Either all writes are applied, or none of them are. Edits started while
+	 * editing the record are part of the running edit.
+	 * @param self the record being edited
+	 * @param editor the editor writing to the record
+	 * @throws ValueMappingException if one of the written values can't be encoded
+	 */
+	void edit(Object self, Consumer editor) throws ValueMappingException {
+		if (edit != null) {
+			editor.accept(self);
+			return;
+		}
+
+		RecordEdit current = new RecordEdit(dispatchTable.fieldCount());
+		edit = current;
+		try {
+			editor.accept(self);
+		}
+		finally {
+			edit = null;
+		}
+
+		// -- encode everything before touching the record
+		RecordBinding binding = binding();
+		int[] positions = new int[current.size()];
+		Object[] values = new Object[current.size()];
+		for (int i = 0; i < current.size(); i++) {
+			RecordAccessor.Setter setter = current.setter(i);
+
+			positions[i] = position(binding, setter.field);
+			try {
+				values[i] = valueEncoder.encode(binding.fieldSchema(setter.field), current.value(i),
+						setter.annotations);
+			}
+			catch (ValueMappingException vme) {
+				throw new ValueMappingException("unable to set field " + setter.field.name() + ": " + vme.getMessage(), vme);
+			}
+		}
+
+		for (int i = 0; i < positions.length; i++) {
+			record.put(positions[i], values[i]);
+			invalidate(current.setter(i).field);
+		}
+	}
+
+	private FieldValueCache valueCache() {
+		if (valueCache == null) {
+			valueCache = new FieldValueCache(dispatchTable.fieldCount(),
+					cacheValues ? FieldValueCache.statistics(dispatchTable.recordClass()) : null);
+		}
+
+		return valueCache;
+	}
+
+	/**
+	 * The binding of the record interface onto the schema of the record, resolved on first
+	 * access. Since the schema of a record never changes, neither does the binding.
+	 * @return the binding of the record
+	 */
+	private RecordBinding binding() {
+		RecordBinding result = binding;
+		if (result == null) {
+			result = dispatchTable.binding(record.getSchema());
+			binding = result;
+		}
+
+		return result;
+	}
+
+}
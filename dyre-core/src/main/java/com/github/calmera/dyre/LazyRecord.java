@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.dyre;
+
+import java.io.IOException;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * A {@link GenericRecord} on top of the avro binary encoding of a record. Fields are only
+ * decoded when they are accessed for the first time, skipping over the fields preceding
+ * them. The record is decoded completely once it is modified, or once the handler of a
+ * dynamic record hands it out.
+ *
+ * Decoding failures surface when accessing the field, as an {@link AvroRuntimeException}.
+ * Fields are decoded as written, they aren't resolved against a reader schema.
+ *
+ * @author Daan Gerits
+ */
+public final class LazyRecord implements GenericRecord {
+
+	private final Schema schema;
+
+	private final byte[] bytes;
+
+	private final int end;
+
+	private final RecordReadPlan plan;
+
+	// -- the offsets at which the fields start, known up to the given number of fields
+	private final int[] offsets;
+
+	private int knownOffsets;
+
+	private final Object[] values;
+
+	private final boolean[] decoded;
+
+	private GenericData.Record materialized;
+
+	/**
+	 * @param schema the schema the record has been written with
+	 * @param bytes the buffer holding the encoded record
+	 * @param offset the offset of the record within the buffer
+	 * @param length the length of the encoded record
+	 */
+	public LazyRecord(Schema schema, byte[] bytes, int offset, int length) {
+		this.schema = schema;
+		this.bytes = bytes;
+		this.end = offset + length;
+		this.plan = RecordReadPlan.of(schema);
+
+		int fieldCount = schema.getFields().size();
+		this.offsets = new int[fieldCount];
+		this.values = new Object[fieldCount];
+		this.decoded = new boolean[fieldCount];
+
+		if (fieldCount > 0) {
+			offsets[0] = offset;
+			knownOffsets = 1;
+		}
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public Object get(int i) {
+		if (materialized != null) {
+			return materialized.get(i);
+		}
+
+		if (!decoded[i]) {
+			values[i] = decode(i);
+			decoded[i] = true;
+		}
+
+		return values[i];
+	}
+
+	@Override
+	public Object get(String key) {
+		Schema.Field field = schema.getField(key);
+
+		return (field != null) ? get(field.pos()) : null;
+	}
+
+	@Override
+	public void put(int i, Object v) {
+		materialize().put(i, v);
+	}
+
+	@Override
+	public void put(String key, Object v) {
+		materialize().put(key, v);
+	}
+
+	/**
+	 * Whether the record has been decoded completely.
+	 * @return true if the record has been materialized
+	 */
+	public boolean isMaterialized() {
+		return materialized != null;
+	}
+
+	/**
+	 * Decode the record completely, reusing the fields decoded already.
+	 * @return the decoded record
+	 */
+	GenericData.Record materialize() {
+		if (materialized == null) {
+			GenericData.Record record = new GenericData.Record(schema);
+			for (int i = 0; i < values.length; i++) {
+				record.put(i, get(i));
+			}
+
+			materialized = record;
+		}
+
+		return materialized;
+	}
+
+	private Object decode(int field) {
+		try {
+			int offset = offset(field);
+			return plan.read(field, bytes, offset, end - offset);
+		}
+		catch (IOException | RuntimeException ex) {
+			throw new AvroRuntimeException(
+					"unable to decode field " + schema.getFields().get(field).name() + " of " + schema.getFullName(), ex);
+		}
+	}
+
+	private int offset(int field) {
+		while (knownOffsets <= field) {
+			offsets[knownOffsets] = plan.skip(knownOffsets - 1, bytes, offsets[knownOffsets - 1]);
+			knownOffsets++;
+		}
+
+		return offsets[field];
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+
+		return materialize().equals((o instanceof LazyRecord other) ? other.materialize() : o);
+	}
+
+	@Override
+	public int hashCode() {
+		return materialize().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return materialize().toString();
+	}
+
+}
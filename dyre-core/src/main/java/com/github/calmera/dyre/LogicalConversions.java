@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.data.TimeConversions;
+
+/**
+ * The avro logical types supported by dyre, together with the conversions between their
+ * raw avro values and java types. Conversions are stateless and resolved once, when a
+ * schema is compiled into a decoder or encoder, never per value.
+ *
+ * <ul>
+ * <li>{@link Instant}: timestamp-millis or timestamp-micros</li>
+ * <li>{@link LocalDate}: date</li>
+ * <li>{@link LocalTime}: time-millis or time-micros</li>
+ * <li>{@link BigDecimal}: decimal</li>
+ * <li>{@link UUID}: uuid</li>
+ * </ul>
+ *
+ * @author Daan Gerits
+ */
+public final class LogicalConversions {
+
+	private static final Map<String, Conversion<?>> CONVERSIONS = Map.of(
+			"timestamp-millis", new TimeConversions.TimestampMillisConversion(),
+			"timestamp-micros", new TimeConversions.TimestampMicrosConversion(),
+			"date", new TimeConversions.DateConversion(),
+			"time-millis", new TimeConversions.TimeMillisConversion(),
+			"time-micros", new TimeConversions.TimeMicrosConversion(),
+			"decimal", new Conversions.DecimalConversion(),
+			"uuid", new Conversions.UUIDConversion());
+
+	private LogicalConversions() {
+	}
+
+	/**
+	 * The conversion for the logical type of the schema.
+	 * @param schema the schema
+	 * @return the conversion or null if the schema has no supported logical type
+	 */
+	public static Conversion<?> conversion(Schema schema) {
+		LogicalType logicalType = schema.getLogicalType();
+
+		return (logicalType != null) ? CONVERSIONS.get(logicalType.getName()) : null;
+	}
+
+	/**
+	 * The schema values of the given java type are stored as by default.
+	 * @param cls the java type
+	 * @return the logical schema or null if the type isn't a logical type, or if it needs
+	 * more information, like the precision and scale of a {@link BigDecimal}
+	 */
+	public static Schema defaultSchema(Class<?> cls) {
+		if (cls == Instant.class) {
+			return LogicalTypes.timestampMillis().addToSchema(SchemaBuilder.builder().longType());
+		}
+		else if (cls == LocalDate.class) {
+			return LogicalTypes.date().addToSchema(SchemaBuilder.builder().intType());
+		}
+		else if (cls == LocalTime.class) {
+			return LogicalTypes.timeMillis().addToSchema(SchemaBuilder.builder().intType());
+		}
+		else if (cls == UUID.class) {
+			return LogicalTypes.uuid().addToSchema(SchemaBuilder.builder().stringType());
+		}
+
+		return null;
+	}
+
+	/**
+	 * The schema of a decimal.
+	 * @param precision the number of digits
+	 * @param scale the number of digits after the decimal point
+	 * @return the decimal schema, stored as bytes
+	 */
+	public static Schema decimalSchema(int precision, int scale) {
+		return LogicalTypes.decimal(precision, scale).addToSchema(SchemaBuilder.builder().bytesType());
+	}
+
+}
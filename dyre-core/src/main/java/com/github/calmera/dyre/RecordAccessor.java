@@ -0,0 +1,346 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+import org.apache.avro.util.Utf8;
+
+import static org.apache.commons.lang3.StringUtils.capitalize;
+
+/**
+ * A prepared implementation of a single {@link DynamicRecord} method. Accessors are
+ * created once per interface by the {@link DispatchTable} and hold everything that can be
+ * resolved up front, so invoking them does not require any string manipulation.
+ *
+ * @author Daan Gerits
+ */
+abstract class RecordAccessor {
+
+	abstract Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable;
+
+	/**
+	 * Reads the value of a field, decoding it into the return type of the getter.
+	 */
+	static final class Getter extends RecordAccessor {
+
+		final RecordField field;
+
+		final Type type;
+
+		final Annotation[] annotations;
+
+		/**
+		 * Whether the getter returns a nested record, which the handler keeps for as long
+		 * as the field isn't modified.
+		 */
+		final boolean nestedRecord;
+
+		/**
+		 * Whether the getter returns a primitive, which is read from the record as is.
+		 */
+		final boolean primitive;
+
+		/**
+		 * Whether the getter returns the {@link Utf8} values of the record as is, which
+		 * allows the record to be modified through them.
+		 */
+		final boolean sharesStrings;
+
+		Getter(RecordField field, Method getter) {
+			this(field, getter.getGenericReturnType(), getter.getAnnotations());
+		}
+
+		Getter(RecordField field, Type type, Annotation[] annotations) {
+			this.field = field;
+			this.type = type;
+			this.annotations = annotations;
+			this.nestedRecord = type instanceof Class<?> cls && DynamicRecord.class.isAssignableFrom(cls);
+			this.primitive = type instanceof Class<?> cls && cls.isPrimitive();
+			this.sharesStrings = sharesStrings(type);
+		}
+
+		private static boolean sharesStrings(Type type) {
+			if (type instanceof ParameterizedType parameterized) {
+				return Arrays.stream(parameterized.getActualTypeArguments()).anyMatch(Getter::sharesStrings);
+			}
+
+			return type == Utf8.class || type == CharSequence.class;
+		}
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			return primitive ? handler.getPrimitiveValue(this) : handler.getFieldValue(this);
+		}
+
+	}
+
+	/**
+	 * Encodes a value and writes it into a field.
+	 */
+	static final class Setter extends RecordAccessor {
+
+		final RecordField field;
+
+		final Type type;
+
+		final Annotation[] annotations;
+
+		/**
+		 * Whether the setter takes a primitive, which is written into the record as is.
+		 */
+		final boolean primitive;
+
+		Setter(RecordField field, Method setter) {
+			this(field, setter.getGenericParameterTypes()[0], setter.getParameterAnnotations()[0]);
+		}
+
+		Setter(RecordField field, Type type, Annotation[] annotations) {
+			this.field = field;
+			this.type = type;
+			this.annotations = annotations;
+			this.primitive = type instanceof Class<?> cls && cls.isPrimitive();
+		}
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			if (primitive) {
+				handler.setPrimitiveValue(this, args[0]);
+			}
+			else {
+				handler.setFieldValue(this, args[0]);
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * Adds a value to a list field.
+	 */
+	static final class Adder extends RecordAccessor {
+
+		final Getter getter;
+
+		final Setter setter;
+
+		Adder(Getter getter, Setter setter) {
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			handler.addValueToField(getter, setter, args[0]);
+			return null;
+		}
+
+	}
+
+	/**
+	 * Puts a key/value pair into a map field.
+	 */
+	static final class Putter extends RecordAccessor {
+
+		final Getter getter;
+
+		final Setter setter;
+
+		Putter(Getter getter, Setter setter) {
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			handler.putValueIntoField(getter, setter, (String) args[0], args[1]);
+			return null;
+		}
+
+	}
+
+	/**
+	 * Removes an item from a list field or a key from a map field.
+	 */
+	static final class Remover extends RecordAccessor {
+
+		final Getter getter;
+
+		final Setter setter;
+
+		Remover(Getter getter, Setter setter) {
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			handler.removeFromField(getter, setter, args[0]);
+			return null;
+		}
+
+	}
+
+	/**
+	 * Returns the underlying generic record.
+	 */
+	static final class RecordGetter extends RecordAccessor {
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) {
+			return handler.exposeRecord();
+		}
+
+	}
+
+	/**
+	 * Invokes the getter of a field identified by its java name.
+	 */
+	static final class DirectRetriever extends RecordAccessor {
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			Class<? extends DynamicRecord> cls = (Class<? extends DynamicRecord>) args[0];
+			String field = (String) args[1];
+
+			Method getter = cls.getMethod("get" + capitalize(field));
+			return getter.invoke(proxy);
+		}
+
+	}
+
+	/**
+	 * Invokes the setter of a field identified by its java name.
+	 */
+	static final class DirectManipulator extends RecordAccessor {
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			Class<? extends DynamicRecord> cls = (Class<? extends DynamicRecord>) args[0];
+			String field = (String) args[1];
+
+			Method setter = null;
+			for (Method plausibleSetter : cls.getMethods()) {
+				if (plausibleSetter.getName().equals("set" + capitalize(field))) {
+					setter = plausibleSetter;
+					break;
+				}
+			}
+
+			if (setter == null) {
+				throw new ValueMappingException("no setter has been found for field " + field);
+			}
+
+			return setter.invoke(proxy, args[2]);
+		}
+
+	}
+
+	/**
+	 * Compares the underlying generic records.
+	 */
+	static final class Equals extends RecordAccessor {
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) {
+			if (args[0] == null && handler.record() != null) {
+				return false;
+			}
+
+			if (!(args[0] instanceof DynamicRecord d)) {
+				return false;
+			}
+
+			return d.record().equals(handler.record());
+		}
+
+	}
+
+	/**
+	 * Hashes the underlying generic record, in line with {@link Equals}.
+	 */
+	static final class HashCode extends RecordAccessor {
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) {
+			return handler.record().hashCode();
+		}
+
+	}
+
+	/**
+	 * Renders the underlying generic record.
+	 */
+	static final class ToString extends RecordAccessor {
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) {
+			return handler.record().toString();
+		}
+
+	}
+
+	/**
+	 * Reports a problem detected while preparing the accessor, at the moment the method is
+	 * actually called. Every call throws a new exception, carrying the stack of the caller.
+	 */
+	static final class Failing extends RecordAccessor {
+
+		private final String message;
+
+		private final Throwable cause;
+
+		Failing(NoSuchMethodException problem) {
+			this.message = problem.getMessage();
+			this.cause = problem.getCause();
+		}
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) throws Throwable {
+			NoSuchMethodException ex = new NoSuchMethodException(message);
+			if (cause != null) {
+				ex.initCause(cause);
+			}
+
+			throw ex;
+		}
+
+	}
+
+	/**
+	 * Any method which can't be mapped onto the record.
+	 */
+	static final class Unsupported extends RecordAccessor {
+
+		private final String methodName;
+
+		Unsupported(String methodName) {
+			this.methodName = methodName;
+		}
+
+		@Override
+		Object invoke(GenericRecordInvocationHandler handler, Object proxy, Object[] args) {
+			throw new UnsupportedOperationException("unsupported method '" + methodName + "'");
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Wraps records of one particular schema, resolving the binding of the interface onto the
+ * schema once instead of looking it up for every record. Meant for records created with
+ * the same schema over and over again, like the ones of a deserializer.
+ *
+ * @param <T> the type of the records
+ * @author Daan Gerits
+ * @see RecordFactory#binder(Class, Schema)
+ */
+public final class RecordBinder<T> {
+
+	private final Class<T> cls;
+
+	private final DispatchTable table;
+
+	private final RecordBinding binding;
+
+	RecordBinder(Class<T> cls, Schema schema) {
+		this.cls = cls;
+		this.table = DispatchTable.forClass(cls);
+		this.binding = table.binding(schema);
+	}
+
+	/**
+	 * @return the schema of the records this binder wraps
+	 */
+	public Schema schema() {
+		return binding.schema();
+	}
+
+	/**
+	 * Wrap a record, which should use the schema of the binder.
+	 * @param record the record
+	 * @return the wrapped record
+	 */
+	public T wrap(GenericRecord record) {
+		return RecordFactory.wrap(cls, handler(record));
+	}
+
+	/**
+	 * Wrap a record decoded from a message, which should use the schema of the binder.
+	 * @param record the decoded record
+	 * @param message the message the record has been decoded from
+	 * @return the wrapped record
+	 * @see RecordFactory#wrap(Class, GenericRecord, byte[])
+	 */
+	public T wrap(GenericRecord record, byte[] message) {
+		return wrap(new GenericRecordInvocationHandler(record), message);
+	}
+
+	/**
+	 * Wrap the record of a handler created with options of its own, like value caching.
+	 * The record should use the schema of the binder.
+	 * @param handler the handler holding the record
+	 * @return the wrapped record
+	 */
+	public T wrap(GenericRecordInvocationHandler handler) {
+		return RecordFactory.wrap(cls, bind(handler));
+	}
+
+	/**
+	 * Wrap the record of a handler created with options of its own, the record having been
+	 * decoded from a message.
+	 * @param handler the handler holding the decoded record
+	 * @param message the message the record has been decoded from
+	 * @return the wrapped record
+	 * @see RecordFactory#wrap(Class, GenericRecord, byte[])
+	 */
+	public T wrap(GenericRecordInvocationHandler handler, byte[] message) {
+		handler.source(new RecordSource(handler.schema(), message));
+
+		return RecordFactory.wrap(cls, bind(handler));
+	}
+
+	private GenericRecordInvocationHandler handler(GenericRecord record) {
+		return bind(new GenericRecordInvocationHandler(record));
+	}
+
+	private GenericRecordInvocationHandler bind(GenericRecordInvocationHandler handler) {
+		if (handler.schema() == binding.schema()) {
+			handler.bind(table, binding);
+		}
+
+		return handler;
+	}
+
+}
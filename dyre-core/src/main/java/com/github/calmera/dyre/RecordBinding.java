@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+
+/**
+ * The fields of a {@link DynamicRecord} interface resolved against one particular avro
+ * schema. For every field of the interface, the binding holds its position within the
+ * schema and its field schema, which allows accessors to use positional access on the
+ * {@link org.apache.avro.generic.IndexedRecord} instead of looking fields up by name.
+ *
+ * Bindings are created by the {@link DispatchTable} of the interface and shared by all
+ * records using the same schema instance. Every binding is validated once when created;
+ * bindings without problems are trusted. Primitive getters and setters of trusted
+ * bindings read and write values as is, without checking their type. Other getters and
+ * setters of trusted bindings use the trusted paths of the value decoder and encoder,
+ * which skip checking the class of the values, and setters of trusted bindings write
+ * into the fixed values their handler allocated itself.
+ *
+ * @author Daan Gerits
+ */
+final class RecordBinding {
+
+	private final Schema schema;
+
+	private final int[] positions;
+
+	private final Schema[] fieldSchemas;
+
+	private final Class<?>[] valueClasses;
+
+	private final boolean[] mutableValues;
+
+	private final List<String> problems;
+
+	private final boolean trusted;
+
+	RecordBinding(Schema schema, Collection<RecordField> fields, Map<RecordField, RecordAccessor.Getter> getters,
+			Collection<RecordAccessor.Setter> setters) {
+		this.schema = schema;
+		this.positions = new int[fields.size()];
+		this.fieldSchemas = new Schema[fields.size()];
+		this.valueClasses = new Class<?>[fields.size()];
+		this.mutableValues = new boolean[fields.size()];
+
+		for (RecordField field : fields) {
+			Schema.Field schemaField = schema.getField(field.name());
+
+			positions[field.slot()] = (schemaField != null) ? schemaField.pos() : -1;
+			fieldSchemas[field.slot()] = (schemaField != null) ? schemaField.schema() : null;
+			valueClasses[field.slot()] = (schemaField != null) ? valueClass(schemaField.schema()) : null;
+			mutableValues[field.slot()] = schemaField != null && holdsMutableValues(schemaField.schema());
+		}
+
+		this.problems = BindingValidator.validate(this, fields, getters, setters);
+		this.trusted = problems.isEmpty();
+	}
+
+	Schema schema() {
+		return schema;
+	}
+
+	/**
+	 * The problems found validating the interface against the schema.
+	 * @return the problems, empty if the binding is trusted
+	 */
+	List<String> problems() {
+		return problems;
+	}
+
+	/**
+	 * Whether every field of the interface exists within the schema and matches its type.
+	 * @return true if the binding is trusted
+	 */
+	boolean trusted() {
+		return trusted;
+	}
+
+	/**
+	 * The position of the field within the schema.
+	 * @param field the field of the interface
+	 * @return the position of the field or -1 if the schema doesn't have the field
+	 */
+	int position(RecordField field) {
+		return positions[field.slot()];
+	}
+
+	/**
+	 * The schema of the field.
+	 * @param field the field of the interface
+	 * @return the schema of the field or null if the schema doesn't have the field
+	 */
+	Schema fieldSchema(RecordField field) {
+		return fieldSchemas[field.slot()];
+	}
+
+	/**
+	 * The class of the primitive values the field holds.
+	 * @param field the field of the interface
+	 * @return the boxed class of the values of a primitive field, or null if the field
+	 * doesn't hold primitives
+	 */
+	Class<?> valueClass(RecordField field) {
+		return valueClasses[field.slot()];
+	}
+
+	/**
+	 * Whether the values decoded from the field may share state with the record, like
+	 * nested records or binary values, allowing the record to be modified through them.
+	 * @param field the field of the interface
+	 * @return true if the field holds records, bytes or fixed values
+	 */
+	boolean holdsMutableValues(RecordField field) {
+		return mutableValues[field.slot()];
+	}
+
+	private static boolean holdsMutableValues(Schema schema) {
+		return switch (schema.getType()) {
+		case RECORD, BYTES, FIXED -> true;
+		case ARRAY -> holdsMutableValues(schema.getElementType());
+		case MAP -> holdsMutableValues(schema.getValueType());
+		case UNION -> schema.getTypes().stream().anyMatch(RecordBinding::holdsMutableValues);
+		default -> false;
+		};
+	}
+
+	private static Class<?> valueClass(Schema schema) {
+		// -- primitives within a nullable union
+		if (schema.getType() == Schema.Type.UNION && schema.getTypes().size() == 2 && schema.isNullable()) {
+			schema = schema.getTypes().get(schema.getTypes().get(0).getType() == Schema.Type.NULL ? 1 : 0);
+		}
+
+		return switch (schema.getType()) {
+		case INT -> Integer.class;
+		case LONG -> Long.class;
+		case FLOAT -> Float.class;
+		case DOUBLE -> Double.class;
+		case BOOLEAN -> Boolean.class;
+		default -> null;
+		};
+	}
+
+}
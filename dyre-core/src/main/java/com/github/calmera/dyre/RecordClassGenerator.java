@@ -0,0 +1,344 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates a concrete implementation of a {@link DynamicRecord} interface and defines it
+ * as a hidden class. Every accessor of the interface is stored in a static final field of
+ * the generated class, allowing the JIT to treat it as a constant and inline the call
+ * down to the {@link GenericRecordInvocationHandler}.
+ *
+ * @author Daan Gerits
+ */
+final class RecordClassGenerator implements Opcodes {
+
+	private static final String BASE_CLASS = Type.getInternalName(AbstractDynamicRecord.class);
+
+	private static final String HANDLER_DESC = Type.getDescriptor(GenericRecordInvocationHandler.class);
+
+	private RecordClassGenerator() {
+	}
+
+	/**
+	 * Determine if a class can be generated for the given interface. Generated classes live
+	 * in the package of this library, so the interface and all types it refers to have to be
+	 * public and visible from the class loader of the library.
+	 * @param recordClass the record interface
+	 * @return true if a class can be generated, false if a proxy should be used instead
+	 */
+	static boolean supports(Class<?> recordClass) {
+		if (!recordClass.isInterface() || !isVisible(recordClass)) {
+			return false;
+		}
+
+		for (Method method : DispatchTable.forClass(recordClass).methods()) {
+			if (!isVisible(method.getReturnType())) {
+				return false;
+			}
+
+			for (Class<?> parameterType : method.getParameterTypes()) {
+				if (!isVisible(parameterType)) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Generate and define the implementation class for the given interface.
+	 * @param table the dispatch table of the record interface
+	 * @return a constructor taking a {@link GenericRecordInvocationHandler}, returning an
+	 * Object
+	 * @throws ReflectiveOperationException if the class could not be defined
+	 */
+	static MethodHandle generate(DispatchTable table) throws ReflectiveOperationException {
+		Class<?> recordClass = table.recordClass();
+
+		List<Method> methods = new ArrayList<>();
+		List<RecordAccessor> accessors = new ArrayList<>();
+		for (Method method : table.methods()) {
+			if (isImplementedByBase(method)) {
+				continue;
+			}
+
+			methods.add(method);
+			accessors.add(table.accessor(method));
+		}
+
+		String className = RecordClassGenerator.class.getPackageName().replace('.', '/') + "/"
+				+ recordClass.getSimpleName() + "$$DyreRecord";
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, BASE_CLASS,
+				new String[] { Type.getInternalName(recordClass) });
+
+		for (int i = 0; i < accessors.size(); i++) {
+			cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "a" + i, fieldDescriptor(accessors.get(i)), null, null)
+					.visitEnd();
+		}
+
+		writeStaticInitializer(cw, className, accessors);
+		writeConstructor(cw);
+
+		for (int i = 0; i < methods.size(); i++) {
+			writeMethod(cw, className, i, methods.get(i), accessors.get(i));
+		}
+
+		cw.visitEnd();
+
+		MethodHandles.Lookup lookup = MethodHandles.lookup()
+				.defineHiddenClassWithClassData(cw.toByteArray(), accessors.toArray(new Object[0]), true);
+
+		return lookup.findConstructor(lookup.lookupClass(),
+				MethodType.methodType(void.class, GenericRecordInvocationHandler.class))
+				.asType(MethodType.methodType(Object.class, GenericRecordInvocationHandler.class));
+	}
+
+	private static void writeStaticInitializer(ClassWriter cw, String className, List<RecordAccessor> accessors) {
+		MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+		mv.visitCode();
+
+		// -- the accessors are passed as class data of the hidden class
+		mv.visitMethodInsn(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+				"()Ljava/lang/invoke/MethodHandles$Lookup;", false);
+		mv.visitLdcInsn("_");
+		mv.visitLdcInsn(Type.getType(Object[].class));
+		mv.visitMethodInsn(INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+				"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;", false);
+		mv.visitTypeInsn(CHECKCAST, "[Ljava/lang/Object;");
+
+		for (int i = 0; i < accessors.size(); i++) {
+			mv.visitInsn(DUP);
+			pushInt(mv, i);
+			mv.visitInsn(AALOAD);
+			mv.visitTypeInsn(CHECKCAST, Type.getType(fieldDescriptor(accessors.get(i))).getInternalName());
+			mv.visitFieldInsn(PUTSTATIC, className, "a" + i, fieldDescriptor(accessors.get(i)));
+		}
+
+		mv.visitInsn(POP);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void writeConstructor(ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + HANDLER_DESC + ")V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitMethodInsn(INVOKESPECIAL, BASE_CLASS, "<init>", "(" + HANDLER_DESC + ")V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void writeMethod(ClassWriter cw, String className, int index, Method method,
+			RecordAccessor accessor) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null,
+				null);
+		mv.visitCode();
+
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		boolean returnsVoid = method.getReturnType() == void.class;
+		String descriptor = fieldDescriptor(accessor);
+
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETSTATIC, className, "a" + index, descriptor);
+
+		if (accessor instanceof RecordAccessor.Getter getter && parameterTypes.length == 0) {
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, getter.primitive ? "getPrimitive" : "get",
+					"(" + descriptor + ")Ljava/lang/Object;", false);
+			writeReturn(mv, method.getReturnType());
+		}
+		else if (accessor instanceof RecordAccessor.Setter setter && parameterTypes.length == 1 && returnsVoid) {
+			loadArguments(mv, parameterTypes);
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, setter.primitive ? "setPrimitive" : "set",
+					"(" + descriptor + "Ljava/lang/Object;)V", false);
+			mv.visitInsn(RETURN);
+		}
+		else if (accessor instanceof RecordAccessor.Adder && parameterTypes.length == 1 && returnsVoid) {
+			loadArguments(mv, parameterTypes);
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, "add", "(" + descriptor + "Ljava/lang/Object;)V", false);
+			mv.visitInsn(RETURN);
+		}
+		else if (accessor instanceof RecordAccessor.Putter && parameterTypes.length == 2 && returnsVoid) {
+			loadArguments(mv, parameterTypes);
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, "put",
+					"(" + descriptor + "Ljava/lang/Object;Ljava/lang/Object;)V", false);
+			mv.visitInsn(RETURN);
+		}
+		else if (accessor instanceof RecordAccessor.Remover && parameterTypes.length == 1 && returnsVoid) {
+			loadArguments(mv, parameterTypes);
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, "remove", "(" + descriptor + "Ljava/lang/Object;)V",
+					false);
+			mv.visitInsn(RETURN);
+		}
+		else {
+			// -- anything else goes through the generic path, passing the arguments like a
+			// -- proxy would
+			if (parameterTypes.length == 0) {
+				mv.visitInsn(ACONST_NULL);
+			}
+			else {
+				pushInt(mv, parameterTypes.length);
+				mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+
+				int slot = 1;
+				for (int i = 0; i < parameterTypes.length; i++) {
+					mv.visitInsn(DUP);
+					pushInt(mv, i);
+					slot = loadArgument(mv, parameterTypes[i], slot);
+					mv.visitInsn(AASTORE);
+				}
+			}
+
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, "invoke",
+					"(" + Type.getDescriptor(RecordAccessor.class) + "[Ljava/lang/Object;)Ljava/lang/Object;", false);
+			writeReturn(mv, method.getReturnType());
+		}
+
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void loadArguments(MethodVisitor mv, Class<?>[] parameterTypes) {
+		int slot = 1;
+		for (Class<?> parameterType : parameterTypes) {
+			slot = loadArgument(mv, parameterType, slot);
+		}
+	}
+
+	private static int loadArgument(MethodVisitor mv, Class<?> type, int slot) {
+		Type asmType = Type.getType(type);
+		mv.visitVarInsn(asmType.getOpcode(ILOAD), slot);
+
+		if (type.isPrimitive()) {
+			Type boxed = boxedType(asmType);
+			mv.visitMethodInsn(INVOKESTATIC, boxed.getInternalName(), "valueOf",
+					Type.getMethodDescriptor(boxed, asmType), false);
+		}
+
+		return slot + asmType.getSize();
+	}
+
+	private static void writeReturn(MethodVisitor mv, Class<?> returnType) {
+		Type asmType = Type.getType(returnType);
+
+		if (returnType == void.class) {
+			mv.visitInsn(POP);
+			mv.visitInsn(RETURN);
+			return;
+		}
+
+		if (returnType.isPrimitive()) {
+			Type boxed = boxedType(asmType);
+			mv.visitTypeInsn(CHECKCAST, boxed.getInternalName());
+			mv.visitMethodInsn(INVOKEVIRTUAL, boxed.getInternalName(), returnType.getName() + "Value",
+					Type.getMethodDescriptor(asmType), false);
+		}
+		else if (returnType != Object.class) {
+			mv.visitTypeInsn(CHECKCAST, asmType.getInternalName());
+		}
+
+		mv.visitInsn(asmType.getOpcode(IRETURN));
+	}
+
+	private static Type boxedType(Type primitive) {
+		return switch (primitive.getSort()) {
+		case Type.BOOLEAN -> Type.getType(Boolean.class);
+		case Type.CHAR -> Type.getType(Character.class);
+		case Type.BYTE -> Type.getType(Byte.class);
+		case Type.SHORT -> Type.getType(Short.class);
+		case Type.INT -> Type.getType(Integer.class);
+		case Type.FLOAT -> Type.getType(Float.class);
+		case Type.LONG -> Type.getType(Long.class);
+		case Type.DOUBLE -> Type.getType(Double.class);
+		default -> throw new IllegalArgumentException(primitive + " is not a primitive type");
+		};
+	}
+
+	private static void pushInt(MethodVisitor mv, int value) {
+		if (value <= 5) {
+			mv.visitInsn(ICONST_0 + value);
+		}
+		else if (value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(BIPUSH, value);
+		}
+		else {
+			mv.visitIntInsn(SIPUSH, value);
+		}
+	}
+
+	private static String fieldDescriptor(RecordAccessor accessor) {
+		if (accessor instanceof RecordAccessor.Getter || accessor instanceof RecordAccessor.Setter
+				|| accessor instanceof RecordAccessor.Adder || accessor instanceof RecordAccessor.Putter
+				|| accessor instanceof RecordAccessor.Remover) {
+			return Type.getDescriptor(accessor.getClass());
+		}
+
+		return Type.getDescriptor(RecordAccessor.class);
+	}
+
+	private static boolean isImplementedByBase(Method method) {
+		try {
+			Method implementation = AbstractDynamicRecord.class.getMethod(method.getName(),
+					method.getParameterTypes());
+			return !Modifier.isAbstract(implementation.getModifiers())
+					&& method.getReturnType().isAssignableFrom(implementation.getReturnType());
+		}
+		catch (NoSuchMethodException ex) {
+			return false;
+		}
+	}
+
+	private static boolean isVisible(Class<?> type) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+
+		if (type.isPrimitive()) {
+			return true;
+		}
+
+		if (!Modifier.isPublic(type.getModifiers())) {
+			return false;
+		}
+
+		try {
+			return Class.forName(type.getName(), false, RecordClassGenerator.class.getClassLoader()) == type;
+		}
+		catch (ClassNotFoundException ex) {
+			return false;
+		}
+	}
+
+}
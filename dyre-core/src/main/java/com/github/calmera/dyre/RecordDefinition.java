@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The accessors of a {@link DynamicRecord} interface, defined without inspecting the
+ * interface through reflection. Definitions are built by classes generated by the dyre
+ * annotation processor, which refer to their accessors by the order in which they have been
+ * added to the {@link Builder}.
+ *
+ * @author Daan Gerits
+ */
+public final class RecordDefinition {
+
+	private final DispatchTable table;
+
+	private RecordDefinition(DispatchTable table) {
+		this.table = table;
+	}
+
+	public static Builder builder(Class<? extends DynamicRecord> recordClass) {
+		return new Builder(recordClass);
+	}
+
+	DispatchTable table() {
+		return table;
+	}
+
+	/**
+	 * Builder for record definitions.
+	 */
+	public static final class Builder {
+
+		private final Class<? extends DynamicRecord> recordClass;
+
+		private final Map<String, RecordField> fields = new LinkedHashMap<>();
+
+		private final Map<String, RecordAccessor.Getter> getters = new HashMap<>();
+
+		private final Map<String, RecordAccessor.Setter> setters = new HashMap<>();
+
+		private final List<Supplier<RecordAccessor>> accessors = new ArrayList<>();
+
+		private Builder(Class<? extends DynamicRecord> recordClass) {
+			this.recordClass = recordClass;
+		}
+
+		/**
+		 * Add a getter.
+		 * @param fieldName the avro name of the field
+		 * @param type the return type of the getter
+		 * @param annotations the annotations of the getter
+		 * @return this builder
+		 */
+		public Builder getter(String fieldName, Type type, Annotation... annotations) {
+			RecordAccessor.Getter getter = new RecordAccessor.Getter(DispatchTable.field(fields, fieldName), type,
+					annotations);
+			getters.putIfAbsent(fieldName, getter);
+			accessors.add(() -> getter);
+			return this;
+		}
+
+		/**
+		 * Add a setter taking an object.
+		 * @param fieldName the avro name of the field
+		 * @param annotations the annotations of the parameter of the setter
+		 * @return this builder
+		 */
+		public Builder setter(String fieldName, Annotation... annotations) {
+			return setter(fieldName, Object.class, annotations);
+		}
+
+		/**
+		 * Add a setter.
+		 * @param fieldName the avro name of the field
+		 * @param type the type of the parameter of the setter
+		 * @param annotations the annotations of the parameter of the setter
+		 * @return this builder
+		 */
+		public Builder setter(String fieldName, Type type, Annotation... annotations) {
+			RecordAccessor.Setter setter = new RecordAccessor.Setter(DispatchTable.field(fields, fieldName), type,
+					annotations);
+			setters.putIfAbsent(fieldName, setter);
+			accessors.add(() -> setter);
+			return this;
+		}
+
+		/**
+		 * Add an {@code addTo} method, relying on the getter and setter of the same field.
+		 * @param fieldName the avro name of the field
+		 * @return this builder
+		 */
+		public Builder adder(String fieldName) {
+			return collectionAccessor("addTo", fieldName);
+		}
+
+		/**
+		 * Add a {@code putInto} method, relying on the getter and setter of the same field.
+		 * @param fieldName the avro name of the field
+		 * @return this builder
+		 */
+		public Builder putter(String fieldName) {
+			return collectionAccessor("putInto", fieldName);
+		}
+
+		/**
+		 * Add a {@code removeFrom} method, relying on the getter and setter of the same
+		 * field.
+		 * @param fieldName the avro name of the field
+		 * @return this builder
+		 */
+		public Builder remover(String fieldName) {
+			return collectionAccessor("removeFrom", fieldName);
+		}
+
+		/**
+		 * Add a method which can't be mapped onto the record.
+		 * @param methodName the name of the method
+		 * @return this builder
+		 */
+		public Builder unsupported(String methodName) {
+			RecordAccessor accessor = new RecordAccessor.Unsupported(methodName);
+			accessors.add(() -> accessor);
+			return this;
+		}
+
+		public RecordDefinition build() {
+			List<RecordAccessor> result = new ArrayList<>(accessors.size());
+			for (Supplier<RecordAccessor> accessor : accessors) {
+				result.add(accessor.get());
+			}
+
+			return new RecordDefinition(new DispatchTable(recordClass, fields, List.copyOf(result)));
+		}
+
+		private Builder collectionAccessor(String prefix, String fieldName) {
+			// -- resolved when building, since the getter and setter may be added later on
+			accessors.add(() -> {
+				RecordAccessor.Getter getter = getters.get(fieldName);
+				RecordAccessor.Setter setter = setters.get(fieldName);
+
+				if (getter == null || setter == null) {
+					return new RecordAccessor.Failing(new NoSuchMethodException(
+							"no getter and setter found on " + recordClass.getName() + " for field " + fieldName));
+				}
+
+				return DispatchTable.collectionAccessor(prefix, getter, setter);
+			});
+			return this;
+		}
+
+	}
+
+}
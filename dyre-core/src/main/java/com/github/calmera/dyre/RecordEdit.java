@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The field writes collected while editing a record, waiting to be encoded and applied
+ * all at once. Writes are kept per field, the last write to a field winning. Adders,
+ * putters and removers edit one working copy of the collection per field, which is only
+ * encoded once the edit completes.
+ *
+ * @author Daan Gerits
+ */
+final class RecordEdit {
+
+	private final RecordAccessor.Setter[] setters;
+
+	private final Object[] values;
+
+	// -- whether the staged value is a working copy owned by the edit
+	private final boolean[] copies;
+
+	// -- the slots in the order in which they have been written first
+	private final int[] slots;
+
+	private int size;
+
+	RecordEdit(int fieldCount) {
+		this.setters = new RecordAccessor.Setter[fieldCount];
+		this.values = new Object[fieldCount];
+		this.copies = new boolean[fieldCount];
+		this.slots = new int[fieldCount];
+	}
+
+	void stage(RecordAccessor.Setter setter, Object value) {
+		int slot = setter.field.slot();
+
+		if (setters[slot] == null) {
+			slots[size++] = slot;
+		}
+
+		setters[slot] = setter;
+		values[slot] = value;
+		copies[slot] = false;
+	}
+
+	/**
+	 * The working copy of the list staged for the field.
+	 * @param field the field being edited
+	 * @return the working copy or null if the field doesn't hold one yet
+	 */
+	List<Object> workingList(RecordField field) {
+		return (copies[field.slot()] && values[field.slot()] instanceof List list) ? list : null;
+	}
+
+	/**
+	 * Stage a working copy of the given list, to be edited in place by later operations.
+	 * @param setter the setter of the field
+	 * @param current the current value of the field, possibly null
+	 * @return the working copy
+	 */
+	List<Object> stageList(RecordAccessor.Setter setter, List<?> current) {
+		List<Object> copy = (current != null) ? new ArrayList<>(current) : new ArrayList<>();
+		stage(setter, copy);
+		copies[setter.field.slot()] = true;
+
+		return copy;
+	}
+
+	/**
+	 * The working copy of the map staged for the field.
+	 * @param field the field being edited
+	 * @return the working copy or null if the field doesn't hold one yet
+	 */
+	Map<Object, Object> workingMap(RecordField field) {
+		return (copies[field.slot()] && values[field.slot()] instanceof Map map) ? map : null;
+	}
+
+	/**
+	 * Stage a working copy of the given map, to be edited in place by later operations.
+	 * @param setter the setter of the field
+	 * @param current the current value of the field, possibly null
+	 * @return the working copy
+	 */
+	Map<Object, Object> stageMap(RecordAccessor.Setter setter, Map<?, ?> current) {
+		Map<Object, Object> copy = (current != null) ? new HashMap<>(current) : new HashMap<>();
+		stage(setter, copy);
+		copies[setter.field.slot()] = true;
+
+		return copy;
+	}
+
+	boolean isStaged(RecordField field) {
+		return setters[field.slot()] != null;
+	}
+
+	/**
+	 * The value staged for the field, working copies being handed out as read-only views.
+	 * @param field the field
+	 * @return the staged value
+	 */
+	Object value(RecordField field) {
+		Object value = values[field.slot()];
+		if (!copies[field.slot()]) {
+			return value;
+		}
+
+		return (value instanceof List list) ? Collections.unmodifiableList(list)
+				: Collections.unmodifiableMap((Map<?, ?>) value);
+	}
+
+	/**
+	 * The number of fields written.
+	 * @return the number of staged fields
+	 */
+	int size() {
+		return size;
+	}
+
+	RecordAccessor.Setter setter(int index) {
+		return setters[slots[index]];
+	}
+
+	Object value(int index) {
+		return values[slots[index]];
+	}
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Proxy;
+import java.util.Locale;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates {@link DynamicRecord} instances on top of a {@link GenericRecord}.
+ *
+ * By default, records are backed by a dynamic proxy. When the {@link Engine#GENERATED}
+ * engine is selected, either through {@link #setEngine(Engine)} or by setting the
+ * {@value #ENGINE_PROPERTY} system property to {@code generated}, a concrete
+ * implementation class is generated for every record interface instead. Interfaces for
+ * which no class can be generated keep on using a proxy.
+ *
+ * Implementations generated at compile time by the dyre annotation processor are always
+ * used when available, regardless of the selected engine.
+ *
+ * @author Daan Gerits
+ */
+public abstract class RecordFactory {
+
+	/**
+	 * The system property used to select the default engine.
+	 */
+	public static final String ENGINE_PROPERTY = "dyre.engine";
+
+	private static final Logger logger = LoggerFactory.getLogger(RecordFactory.class);
+
+	private static final ClassValue<MethodHandle> GENERATED_CONSTRUCTORS = new ClassValue<>() {
+		@Override
+		protected MethodHandle computeValue(Class<?> type) {
+			if (!RecordClassGenerator.supports(type)) {
+				logger.debug("unable to generate a record class for {}, using a proxy instead", type.getName());
+				return null;
+			}
+
+			try {
+				return RecordClassGenerator.generate(DispatchTable.forClass(type));
+			}
+			catch (ReflectiveOperationException | LinkageError ex) {
+				logger.warn("failed to generate a record class for {}, using a proxy instead", type.getName(), ex);
+				return null;
+			}
+		}
+	};
+
+	private static volatile Engine engine = Engine
+			.valueOf(System.getProperty(ENGINE_PROPERTY, Engine.PROXY.name()).toUpperCase(Locale.ROOT));
+
+	/**
+	 * The ways in which a record interface can be implemented.
+	 */
+	public enum Engine {
+
+		/**
+		 * Back records by a {@link java.lang.reflect.Proxy}.
+		 */
+		PROXY,
+
+		/**
+		 * Back records by a class generated at runtime, falling back to a proxy if the
+		 * interface does not allow it.
+		 */
+		GENERATED
+
+	}
+
+	public static Engine getEngine() {
+		return engine;
+	}
+
+	public static void setEngine(Engine engine) {
+		RecordFactory.engine = engine;
+	}
+
+	/**
+	 * Validate a record interface against a writer schema up front, instead of running
+	 * into mismatches while accessing records. All problems are reported at once. Records
+	 * of an interface which matches the schema skip the checks made on every call.
+	 * @param cls the record interface
+	 * @param schema the schema records of the interface will be created with
+	 * @throws ValueMappingException listing the problems if the interface doesn't match
+	 */
+	public static void validate(Class<? extends DynamicRecord> cls, Schema schema) throws ValueMappingException {
+		DispatchTable.forClass(cls).validate(schema);
+	}
+
+	/**
+	 * Create a binder wrapping records of the given schema, resolving the binding of the
+	 * interface onto the schema once.
+	 * @param cls the record interface
+	 * @param schema the schema of the records to wrap
+	 * @param <T> the type of the records
+	 * @return the binder
+	 */
+	public static <T> RecordBinder<T> binder(Class<T> cls, Schema schema) {
+		return new RecordBinder<>(cls, schema);
+	}
+
+	public static <T> T wrap(Class<T> cls, GenericRecord record) {
+		return wrap(cls, new GenericRecordInvocationHandler(record));
+	}
+
+	/**
+	 * Wrap a record decoded from a message, remembering the message for as long as the
+	 * record isn't modified.
+	 * @param cls the record interface
+	 * @param record the decoded record
+	 * @param message the message the record has been decoded from
+	 * @param <T> the type of the record
+	 * @return the record
+	 * @see #source(Object)
+	 */
+	public static <T> T wrap(Class<T> cls, GenericRecord record, byte[] message) {
+		GenericRecordInvocationHandler handler = new GenericRecordInvocationHandler(record);
+		handler.source(new RecordSource(record.getSchema(), message));
+
+		return wrap(cls, handler);
+	}
+
+	/**
+	 * The message a record has been decoded from, if the record hasn't been modified since.
+	 * Records are considered modified once a field has been written, once their generic
+	 * record has been handed out, once a field holding nested records or binary values
+	 * has been read or once strings have been read as {@link org.apache.avro.util.Utf8}
+	 * or {@link CharSequence}.
+	 * @param record the record
+	 * @return the source of the record, or null if the record has no source or might have
+	 * been modified
+	 */
+	public static RecordSource source(Object record) {
+		GenericRecordInvocationHandler handler = GenericRecordInvocationHandler.of(record);
+		return (handler != null) ? handler.source() : null;
+	}
+
+	public static <T> T wrap(Class<T> cls, GenericRecordInvocationHandler handler) {
+		RecordProvider<?> provider = GeneratedRecords.provider(cls);
+		if (provider != null) {
+			return (T) provider.newInstance(handler);
+		}
+
+		if (engine == Engine.GENERATED) {
+			MethodHandle constructor = GENERATED_CONSTRUCTORS.get(cls);
+
+			if (constructor != null) {
+				handler.bind(DispatchTable.forClass(cls));
+
+				try {
+					return (T) (Object) constructor.invokeExact(handler);
+				}
+				catch (RuntimeException | Error ex) {
+					throw ex;
+				}
+				catch (Throwable t) {
+					throw new IllegalStateException("unable to instantiate the generated class for " + cls.getName(),
+							t);
+				}
+			}
+		}
+
+		return (T) Proxy.newProxyInstance(cls.getClassLoader(), new Class<?>[] { cls }, handler);
+	}
+
+}
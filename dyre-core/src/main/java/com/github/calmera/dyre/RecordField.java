@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+/**
+ * A field of a {@link DynamicRecord} interface, resolved once while building its
+ * {@link DispatchTable}. All accessors pointing to the same avro field share the same
+ * instance.
+ *
+ * @author Daan Gerits
+ */
+final class RecordField {
+
+	private final int slot;
+
+	private final String name;
+
+	RecordField(int slot, String name) {
+		this.slot = slot;
+		this.name = name;
+	}
+
+	/**
+	 * The index of the field within its dispatch table.
+	 * @return the slot of the field
+	 */
+	int slot() {
+		return slot;
+	}
+
+	/**
+	 * The name of the field as used in the avro schema.
+	 * @return the avro field name
+	 */
+	String name() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
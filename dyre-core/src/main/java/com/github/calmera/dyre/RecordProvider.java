@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import org.apache.avro.Schema;
+
+/**
+ * Provides a {@link DynamicRecord} implementation generated at compile time by the dyre
+ * annotation processor. Providers are discovered through the {@link java.util.ServiceLoader}
+ * and take precedence over proxies and runtime generated classes, so records they provide
+ * can be created without any reflection.
+ *
+ * @param <T> the type of the record interface
+ * @author Daan Gerits
+ */
+public interface RecordProvider<T extends DynamicRecord> {
+
+	/**
+	 * The record interface implemented by the generated class.
+	 * @return the record interface
+	 */
+	Class<T> recordClass();
+
+	/**
+	 * The avro schema derived from the record interface at compile time.
+	 * @return the derived schema or null if the interface uses types which can't be derived
+	 */
+	Schema schema();
+
+	/**
+	 * The accessors of the record interface.
+	 * @return the definition of the record interface
+	 */
+	RecordDefinition definition();
+
+	/**
+	 * Create a new record instance.
+	 * @param handler the handler holding the generic record
+	 * @return the record instance
+	 */
+	T newInstance(GenericRecordInvocationHandler handler);
+
+}
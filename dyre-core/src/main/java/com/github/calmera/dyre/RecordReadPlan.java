@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.dyre;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+
+/**
+ * Locates the fields of a record within its avro binary encoding by skipping over the
+ * fields preceding them, without decoding those, and decodes single fields once located.
+ * Plans are compiled once per writer schema instance and shared by all threads, the
+ * datum readers decoding the fields are kept per thread.
+ *
+ * Fields are decoded with the writer schema only, there's no reader schema to resolve
+ * them against: records of an interface are bound to the writer schema by field name.
+ *
+ * @author Daan Gerits
+ */
+final class RecordReadPlan {
+
+	// -- plans are dropped all at once when schemas keep on coming, avoiding unbounded growth
+	private static final int MAX_PLANS = 1024;
+
+	// -- copy on write, keyed by schema identity
+	private static volatile Map<Schema, RecordReadPlan> plans = new IdentityHashMap<>();
+
+	// -- binary decoders are reset for every field being read, so one per thread suffices
+	private static final ThreadLocal<DecoderHolder> decoders = ThreadLocal.withInitial(DecoderHolder::new);
+
+	private final Skipper[] skippers;
+
+	private final Schema[] fieldSchemas;
+
+	// -- datum readers aren't meant to be shared between threads, they're dropped with the plan
+	private final ThreadLocal<GenericDatumReader<Object>[]> readers;
+
+	private RecordReadPlan(Schema schema) {
+		List<Schema.Field> fields = schema.getFields();
+		Map<Schema, Skipper[]> records = new IdentityHashMap<>();
+
+		this.skippers = new Skipper[fields.size()];
+		this.fieldSchemas = new Schema[fields.size()];
+		for (Schema.Field field : fields) {
+			skippers[field.pos()] = skipper(field.schema(), records);
+			fieldSchemas[field.pos()] = field.schema();
+		}
+
+		this.readers = ThreadLocal.withInitial(() -> new GenericDatumReader[fieldSchemas.length]);
+	}
+
+	static RecordReadPlan of(Schema schema) {
+		RecordReadPlan plan = plans.get(schema);
+		if (plan != null) {
+			return plan;
+		}
+
+		synchronized (RecordReadPlan.class) {
+			plan = plans.get(schema);
+			if (plan == null) {
+				plan = new RecordReadPlan(schema);
+
+				Map<Schema, RecordReadPlan> updated = (plans.size() < MAX_PLANS) ? new IdentityHashMap<>(plans)
+						: new IdentityHashMap<>();
+				updated.put(schema, plan);
+				plans = updated;
+			}
+
+			return plan;
+		}
+	}
+
+	/**
+	 * Skip over a field.
+	 * @param field the position of the field
+	 * @param bytes the encoded record
+	 * @param offset the offset at which the field starts
+	 * @return the offset at which the next field starts
+	 */
+	int skip(int field, byte[] bytes, int offset) {
+		return skippers[field].skip(bytes, offset);
+	}
+
+	/**
+	 * Decode a field.
+	 * @param field the position of the field
+	 * @param bytes the encoded record
+	 * @param offset the offset at which the field starts
+	 * @param length the number of bytes available from the offset on
+	 * @return the decoded avro value
+	 * @throws IOException if the field can't be decoded
+	 */
+	Object read(int field, byte[] bytes, int offset, int length) throws IOException {
+		DecoderHolder holder = decoders.get();
+		holder.decoder = DecoderFactory.get().binaryDecoder(bytes, offset, length, holder.decoder);
+
+		GenericDatumReader<Object>[] fieldReaders = readers.get();
+		GenericDatumReader<Object> reader = fieldReaders[field];
+		if (reader == null) {
+			reader = new GenericDatumReader<>(fieldSchemas[field]);
+			fieldReaders[field] = reader;
+		}
+
+		return reader.read(null, holder.decoder);
+	}
+
+	private static Skipper skipper(Schema schema, Map<Schema, Skipper[]> records) {
+		return switch (schema.getType()) {
+		case NULL -> (bytes, offset) -> offset;
+		case BOOLEAN -> (bytes, offset) -> offset + 1;
+		case INT, LONG, ENUM -> RecordReadPlan::skipVarint;
+		case FLOAT -> (bytes, offset) -> offset + 4;
+		case DOUBLE -> (bytes, offset) -> offset + 8;
+		case STRING, BYTES -> RecordReadPlan::skipBytes;
+		case FIXED -> {
+			int size = schema.getFixedSize();
+			yield (bytes, offset) -> offset + size;
+		}
+		case ARRAY -> {
+			Skipper element = skipper(schema.getElementType(), records);
+			yield (bytes, offset) -> skipBlocks(bytes, offset, element);
+		}
+		case MAP -> {
+			Skipper value = skipper(schema.getValueType(), records);
+			yield (bytes, offset) -> skipBlocks(bytes, offset, (b, o) -> value.skip(b, skipBytes(b, o)));
+		}
+		case UNION -> {
+			Skipper[] branches = new Skipper[schema.getTypes().size()];
+			for (int i = 0; i < branches.length; i++) {
+				branches[i] = skipper(schema.getTypes().get(i), records);
+			}
+			yield (bytes, offset) -> branches[(int) readVarint(bytes, offset)].skip(bytes, skipVarint(bytes, offset));
+		}
+		case RECORD -> recordSkipper(schema, records);
+		};
+	}
+
+	private static Skipper recordSkipper(Schema schema, Map<Schema, Skipper[]> records) {
+		// -- records referring to themselves use the skippers compiled so far
+		Skipper[] fields = records.get(schema);
+		if (fields == null) {
+			fields = new Skipper[schema.getFields().size()];
+			records.put(schema, fields);
+
+			for (Schema.Field field : schema.getFields()) {
+				fields[field.pos()] = skipper(field.schema(), records);
+			}
+		}
+
+		Skipper[] fieldSkippers = fields;
+		return (bytes, offset) -> {
+			for (Skipper field : fieldSkippers) {
+				offset = field.skip(bytes, offset);
+			}
+			return offset;
+		};
+	}
+
+	private static int skipBlocks(byte[] bytes, int offset, Skipper item) {
+		while (true) {
+			long count = readVarint(bytes, offset);
+			offset = skipVarint(bytes, offset);
+
+			if (count == 0) {
+				return offset;
+			}
+			else if (count < 0) {
+				// -- blocks with a negative count are prefixed with their size in bytes
+				long size = readVarint(bytes, offset);
+				offset = skipVarint(bytes, offset) + (int) size;
+			}
+			else {
+				for (long i = 0; i < count; i++) {
+					offset = item.skip(bytes, offset);
+				}
+			}
+		}
+	}
+
+	private static int skipBytes(byte[] bytes, int offset) {
+		return skipVarint(bytes, offset) + (int) readVarint(bytes, offset);
+	}
+
+	private static int skipVarint(byte[] bytes, int offset) {
+		while ((bytes[offset++] & 0x80) != 0) {
+			// -- skip the continuation bytes
+		}
+
+		return offset;
+	}
+
+	private static long readVarint(byte[] bytes, int offset) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[offset++];
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+
+		// -- zig-zag decoding
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	@FunctionalInterface
+	private interface Skipper {
+
+		int skip(byte[] bytes, int offset);
+
+	}
+
+	private static final class DecoderHolder {
+
+		private BinaryDecoder decoder;
+
+	}
+
+}
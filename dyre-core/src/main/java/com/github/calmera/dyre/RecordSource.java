@@ -14,20 +14,19 @@
  * limitations under the License.
  */
 
-package com.github.calmera.dyre.encoders;
 
-import java.lang.annotation.Annotation;
+package com.github.calmera.dyre;
 
-import com.github.calmera.dyre.ValueMappingException;
 import org.apache.avro.Schema;
 
 /**
+ * The serialized message a record has been decoded from, together with the schema of the
+ * record. A record only hands out its source for as long as it hasn't been modified, see
+ * {@link RecordFactory#source(Object)}.
+ *
+ * @param schema the schema of the record
+ * @param message the message, exactly as it has been received
  * @author Daan Gerits
  */
-public interface ValueEncoder {
-
-	ValueEncoder DEFAULT_ENCODER = new DefaultValueEncoder();
-
-	Object encode(Schema schema, Object actualValue, Annotation[] annotations) throws ValueMappingException;
-
+public record RecordSource(Schema schema, byte[] message) {
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.dyre;
+
+import org.apache.avro.Schema;
+
+/**
+ * Encodes and decodes the values of one java type stored as one particular avro type,
+ * taking precedence over the built-in mapping of that java type. Codecs are discovered
+ * through the {@link java.util.ServiceLoader} or registered with
+ * {@link ValueCodecs#register(ValueCodec)}.
+ *
+ * <pre>
+ * public final class MoneyCodec implements ValueCodec&lt;Money&gt; {
+ *     public Class&lt;Money&gt; javaType() { return Money.class; }
+ *     public Schema schema() { return SchemaBuilder.builder().longType(); }
+ *     public Object encode(Money value, Schema schema) { return value.cents(); }
+ *     public Money decode(Object raw, Schema schema) { return new Money((Long) raw); }
+ * }
+ * </pre>
+ *
+ * @param <T> the java type
+ * @author Daan Gerits
+ */
+public interface ValueCodec<T> {
+
+	/**
+	 * The java type handled by the codec, including its subclasses.
+	 * @return the java type
+	 */
+	Class<T> javaType();
+
+	/**
+	 * The schema values are stored as. Its type determines the avro values the codec
+	 * handles, the schema itself being used when deriving schemas from record interfaces.
+	 * @return the schema
+	 */
+	Schema schema();
+
+	/**
+	 * Encode a value into its avro representation.
+	 * @param value the value, never null
+	 * @param schema the schema of the field
+	 * @return the avro value
+	 * @throws ValueMappingException if the value can't be encoded
+	 */
+	Object encode(T value, Schema schema) throws ValueMappingException;
+
+	/**
+	 * Decode an avro value.
+	 * @param raw the avro value, never null
+	 * @param schema the schema of the field, or null if not known
+	 * @return the decoded value
+	 * @throws ValueMappingException if the value can't be decoded
+	 */
+	T decode(Object raw, Schema schema) throws ValueMappingException;
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.dyre;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.apache.avro.Schema;
+
+/**
+ * The registry of {@link ValueCodec}s. Codecs on the classpath are discovered through the
+ * {@link ServiceLoader} when the registry is first used. The codecs of a java type are
+ * resolved once per class, including the codecs registered for its superclasses and
+ * interfaces, after which looking them up takes constant time.
+ *
+ * Schemas are compiled into decoders and encoders once, so codecs should be registered
+ * before records using them are accessed.
+ *
+ * @author Daan Gerits
+ */
+public final class ValueCodecs {
+
+	// -- copy on write
+	private static volatile List<ValueCodec<?>> registered = load();
+
+	private static volatile ClassValue<Map<Schema.Type, ValueCodec<?>>> resolved = newResolver();
+
+	private ValueCodecs() {
+	}
+
+	/**
+	 * Register a codec, taking precedence over the codecs registered before for the same
+	 * java type and avro type.
+	 * @param codec the codec to register
+	 */
+	public static synchronized void register(ValueCodec<?> codec) {
+		List<ValueCodec<?>> updated = new ArrayList<>(registered);
+		updated.add(0, codec);
+		registered = updated;
+
+		// -- drop all resolved classes at once
+		resolved = newResolver();
+	}
+
+	/**
+	 * Check if any codec has been registered at all.
+	 * @return true if at least one codec has been registered
+	 */
+	static boolean any() {
+		return !registered.isEmpty();
+	}
+
+	/**
+	 * Check if any codec handles values of the given avro type, allowing decoders and
+	 * encoders to skip looking up codecs for the types no codec is interested in.
+	 * @param schemaType the avro type
+	 * @return true if a codec has been registered for the avro type
+	 */
+	public static boolean handles(Schema.Type schemaType) {
+		for (ValueCodec<?> codec : registered) {
+			if (codec.schema().getType() == schemaType) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * The codec for values of the given class stored as the given avro type.
+	 * @param cls the class of the values
+	 * @param schemaType the avro type, or null for the first codec of the class
+	 * @return the codec or null if no codec has been registered
+	 */
+	public static ValueCodec<Object> codec(Class<?> cls, Schema.Type schemaType) {
+		Map<Schema.Type, ValueCodec<?>> codecs = resolved.get(cls);
+		if (codecs.isEmpty()) {
+			return null;
+		}
+
+		return (ValueCodec<Object>) ((schemaType != null) ? codecs.get(schemaType) : codecs.values().iterator().next());
+	}
+
+	private static ClassValue<Map<Schema.Type, ValueCodec<?>>> newResolver() {
+		return new ClassValue<>() {
+			@Override
+			protected Map<Schema.Type, ValueCodec<?>> computeValue(Class<?> type) {
+				Map<Schema.Type, ValueCodec<?>> codecs = new EnumMap<>(Schema.Type.class);
+
+				// -- registered codecs are ordered from the most recent one
+				for (ValueCodec<?> codec : registered) {
+					if (codec.javaType().isAssignableFrom(type)) {
+						codecs.putIfAbsent(codec.schema().getType(), codec);
+					}
+				}
+
+				return codecs.isEmpty() ? Collections.emptyMap() : codecs;
+			}
+		};
+	}
+
+	private static List<ValueCodec<?>> load() {
+		List<ValueCodec<?>> codecs = new ArrayList<>();
+		for (ValueCodec<?> codec : ServiceLoader.load(ValueCodec.class)) {
+			codecs.add(codec);
+		}
+
+		return codecs;
+	}
+
+}
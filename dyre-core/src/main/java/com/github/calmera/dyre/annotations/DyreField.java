@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * @author Daan Gerits
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DyreField {
+
+	/**
+	 * Indicator to signal if the field is required or not
+	 * @return true if required, false if not; defaults to true.
+	 */
+	boolean required() default true;
+
+	/**
+	 * The number of digits of a {@link java.math.BigDecimal} field, which is mandatory for
+	 * decimal fields.
+	 * @return the precision of the decimal
+	 */
+	int precision() default 0;
+
+	/**
+	 * The number of digits after the decimal point of a {@link java.math.BigDecimal} field.
+	 * @return the scale of the decimal; defaults to 0.
+	 */
+	int scale() default 0;
+
+	/**
+	 * The number of bytes of a fixed field. Setting a size on a byte[],
+	 * {@link java.nio.ByteBuffer} or {@link java.util.UUID} field stores it as an avro
+	 * fixed instead of as bytes or a string. UUIDs require a size of 16.
+	 * @return the size of the fixed; defaults to 0, which doesn't make the field a fixed.
+	 */
+	int size() default 0;
+
+}
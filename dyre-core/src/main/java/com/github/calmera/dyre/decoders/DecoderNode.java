@@ -0,0 +1,478 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.decoders;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.github.calmera.dyre.EnumMapping;
+import com.github.calmera.dyre.GenericRecordInvocationHandler;
+import com.github.calmera.dyre.RecordFactory;
+import com.github.calmera.dyre.ValueCodec;
+import com.github.calmera.dyre.ValueMappingException;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericEnumSymbol;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Decodes values into one particular java type. Decoders are compiled by the
+ * {@link DefaultValueDecoder} once for every combination of java type and schema, after
+ * which decoding a value doesn't need to inspect the type anymore.
+ *
+ * @author Daan Gerits
+ */
+abstract class DecoderNode {
+
+	/**
+	 * Decode the given value.
+	 * @param in the value to decode, never null
+	 * @return the decoded value
+	 * @throws ValueMappingException if the value can't be decoded
+	 */
+	abstract Object decode(Object in) throws ValueMappingException;
+
+	static Object decodeNullable(DecoderNode node, Object in) throws ValueMappingException {
+		return (in == null) ? null : node.decode(in);
+	}
+
+	static final class RecordNode extends DecoderNode {
+
+		private final Class<?> recordClass;
+
+		private final boolean trusted;
+
+		// -- nested records decode their values the way the enclosing record does
+		private final ValueDecoder valueDecoder;
+
+		RecordNode(Class<?> recordClass, boolean trusted, ValueDecoder valueDecoder) {
+			this.recordClass = recordClass;
+			this.trusted = trusted;
+			this.valueDecoder = valueDecoder;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			if (trusted || in instanceof GenericRecord) {
+				return RecordFactory.wrap(recordClass,
+						GenericRecordInvocationHandler.forNestedRecord((GenericRecord) in, valueDecoder));
+			}
+
+			throw new ValueMappingException(in.getClass().getName() + " is not a " + GenericRecord.class.getName());
+		}
+
+	}
+
+	/**
+	 * Decodes values using a {@link ValueCodec}.
+	 */
+	static final class CodecNode extends DecoderNode {
+
+		private final ValueCodec<Object> codec;
+
+		private final Schema schema;
+
+		CodecNode(ValueCodec<Object> codec, Schema schema) {
+			this.codec = codec;
+			this.schema = schema;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			return codec.decode(in, schema);
+		}
+
+	}
+
+	/**
+	 * Passes avro records as is, for records which aren't mapped onto an interface.
+	 */
+	static final class GenericRecordNode extends DecoderNode {
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			if (in instanceof GenericRecord) {
+				return in;
+			}
+
+			throw new ValueMappingException(in.getClass().getName() + " is not a " + GenericRecord.class.getName());
+		}
+
+	}
+
+	/**
+	 * Decodes the values of a union with several non-null branches using the node of the
+	 * branch the value belongs to. Named values are resolved by the full name of their
+	 * schema, other values by the avro type their class represents.
+	 */
+	static final class UnionNode extends DecoderNode {
+
+		private final Map<String, DecoderNode> namedBranches;
+
+		private final Map<Schema.Type, DecoderNode> branches;
+
+		UnionNode(Map<String, DecoderNode> namedBranches, Map<Schema.Type, DecoderNode> branches) {
+			this.namedBranches = namedBranches;
+			this.branches = branches;
+		}
+
+		static boolean isNamed(Schema.Type type) {
+			return type == Schema.Type.RECORD || type == Schema.Type.ENUM || type == Schema.Type.FIXED;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			DecoderNode node;
+			if (in instanceof GenericContainer container && isNamed(container.getSchema().getType())) {
+				node = namedBranches.get(container.getSchema().getFullName());
+			}
+			else {
+				node = branches.get(typeOf(in));
+			}
+
+			if (node == null) {
+				throw new ValueMappingException("no branch of the union matches a " + in.getClass().getName());
+			}
+
+			return node.decode(in);
+		}
+
+		private static Schema.Type typeOf(Object in) {
+			if (in instanceof CharSequence) {
+				return Schema.Type.STRING;
+			}
+			else if (in instanceof Integer) {
+				return Schema.Type.INT;
+			}
+			else if (in instanceof Long) {
+				return Schema.Type.LONG;
+			}
+			else if (in instanceof Float) {
+				return Schema.Type.FLOAT;
+			}
+			else if (in instanceof Double) {
+				return Schema.Type.DOUBLE;
+			}
+			else if (in instanceof Boolean) {
+				return Schema.Type.BOOLEAN;
+			}
+			else if (in instanceof ByteBuffer) {
+				return Schema.Type.BYTES;
+			}
+			else if (in instanceof List) {
+				return Schema.Type.ARRAY;
+			}
+			else if (in instanceof Map) {
+				return Schema.Type.MAP;
+			}
+
+			return null;
+		}
+
+	}
+
+	static final class ListNode extends DecoderNode {
+
+		private final DecoderNode elementNode;
+
+		ListNode(DecoderNode elementNode) {
+			this.elementNode = elementNode;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			if (!(in instanceof GenericData.Array<?> array)) {
+				throw new ValueMappingException(
+						"Expected a " + GenericData.Array.class.getName() + " but received a " + in.getClass().getName());
+			}
+
+			List<Object> result = new ArrayList<>(array.size());
+			for (Object obj : array) {
+				result.add(decodeNullable(elementNode, obj));
+			}
+
+			return Collections.unmodifiableList(result);
+		}
+
+	}
+
+	static final class MapNode extends DecoderNode {
+
+		private final DecoderNode keyNode;
+
+		private final DecoderNode valueNode;
+
+		MapNode(DecoderNode keyNode, DecoderNode valueNode) {
+			this.keyNode = keyNode;
+			this.valueNode = valueNode;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			if (!(in instanceof Map<?, ?> m)) {
+				throw new ValueMappingException(
+						"Expected a " + Map.class.getName() + " but received a " + in.getClass().getName());
+			}
+
+			Map<Object, Object> result = new HashMap<>();
+			for (Map.Entry<?, ?> entry : m.entrySet()) {
+				result.put(decodeNullable(keyNode, entry.getKey()), decodeNullable(valueNode, entry.getValue()));
+			}
+
+			return Collections.unmodifiableMap(result);
+		}
+
+	}
+
+	static final class EnumNode extends DecoderNode {
+
+		private final Class<? extends Enum> enumClass;
+
+		// -- the mapping for the schema of the field, if known
+		private final EnumMapping<?> mapping;
+
+		EnumNode(Class<? extends Enum> enumClass, Schema schema) {
+			this.enumClass = enumClass;
+			this.mapping = (schema != null && schema.getType() == Schema.Type.ENUM)
+					? EnumMapping.of((Class) enumClass, schema) : null;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			// -- enums are symbols in a generic record, or strings when set by hand
+			if (in instanceof GenericData.EnumSymbol symbol) {
+				EnumMapping<?> m = mapping;
+				if (m == null || m.schema() != symbol.getSchema()) {
+					m = EnumMapping.of((Class) enumClass, symbol.getSchema());
+				}
+
+				return m.constant(symbol);
+			}
+			else if (in instanceof CharSequence) {
+				return (mapping != null) ? mapping.constant(in) : Enum.valueOf(enumClass, in.toString());
+			}
+
+			throw new ValueMappingException("Expected a " + GenericData.EnumSymbol.class.getName()
+					+ "or java.lang.String but received a " + in.getClass().getName());
+		}
+
+	}
+
+	/**
+	 * Converts the raw value of a logical type into its java type.
+	 */
+	static final class LogicalNode extends DecoderNode {
+
+		private final Conversion<?> conversion;
+
+		private final Schema schema;
+
+		LogicalNode(Conversion<?> conversion, Schema schema) {
+			this.conversion = conversion;
+			this.schema = schema;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			try {
+				return Conversions.convertToLogicalType(in, schema, schema.getLogicalType(), conversion);
+			}
+			catch (AvroRuntimeException | ClassCastException ex) {
+				throw new ValueMappingException("Unable to map " + in.getClass().getName() + " to "
+						+ conversion.getConvertedType().getName(), ex);
+			}
+		}
+
+	}
+
+	/**
+	 * Decodes bytes into read-only views of the buffer held by the record, or into byte
+	 * arrays, which have to be copied unless the record holds an array itself.
+	 */
+	static final class BytesNode extends DecoderNode {
+
+		private final boolean buffer;
+
+		BytesNode(Class<?> expected) {
+			this.buffer = expected == ByteBuffer.class;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			if (in instanceof ByteBuffer b) {
+				if (buffer) {
+					return b.asReadOnlyBuffer();
+				}
+
+				byte[] result = new byte[b.remaining()];
+				b.duplicate().get(result);
+				return result;
+			}
+			else if (in instanceof byte[] b) {
+				return buffer ? ByteBuffer.wrap(b).asReadOnlyBuffer() : b;
+			}
+			else if (in instanceof GenericFixed f) {
+				// -- fixed values are written in place, so hand out a copy of their bytes
+				byte[] copy = f.bytes().clone();
+				return buffer ? ByteBuffer.wrap(copy).asReadOnlyBuffer() : copy;
+			}
+
+			throw new ValueMappingException("Expected a " + ByteBuffer.class.getName() + " but received a "
+					+ in.getClass().getName());
+		}
+
+	}
+
+	/**
+	 * Decodes uuids stored as a fixed of 16 bytes. The size of the fixed is checked once,
+	 * when compiling the node for its schema.
+	 */
+	static final class FixedUuidNode extends DecoderNode {
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			if (!(in instanceof GenericFixed f)) {
+				throw new ValueMappingException("Expected a fixed of 16 bytes but received a " + in.getClass().getName());
+			}
+
+			ByteBuffer bytes = ByteBuffer.wrap(f.bytes());
+			return new UUID(bytes.getLong(0), bytes.getLong(8));
+		}
+
+	}
+
+	/**
+	 * Passes values of the type the schema produces as is.
+	 */
+	static final class PassThrough extends DecoderNode {
+
+		private final Class<?> expected;
+
+		private final DecoderNode fallback;
+
+		PassThrough(Class<?> expected, DecoderNode fallback) {
+			this.expected = expected;
+			this.fallback = fallback;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			return (in.getClass() == expected) ? in : fallback.decode(in);
+		}
+
+	}
+
+	/**
+	 * Passes values as is, for trusted records holding values of the expected type.
+	 */
+	static final class Identity extends DecoderNode {
+
+		@Override
+		Object decode(Object in) {
+			return in;
+		}
+
+	}
+
+	/**
+	 * Decodes the strings and enum symbols of trusted records into strings.
+	 */
+	static final class ToStringNode extends DecoderNode {
+
+		@Override
+		Object decode(Object in) {
+			return in.toString();
+		}
+
+	}
+
+	/**
+	 * Decodes strings and values which can be used as is.
+	 */
+	static final class ValueNode extends DecoderNode {
+
+		private static final Set<Class<?>> DIRECT_TYPES = Set.of(byte[].class, Integer.class, Long.class,
+				Float.class, Double.class, Boolean.class, String.class);
+
+		private final Class<?> expected;
+
+		private final boolean string;
+
+		private final boolean utf8;
+
+		ValueNode(Class<?> expected) {
+			this.expected = expected;
+			this.string = expected == String.class;
+			this.utf8 = expected == Utf8.class;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			// -- Utf8 caches its string form and only decodes the first byte length bytes of
+			// -- its buffer, while CharSequence and Utf8 accessors get the avro value as is
+			if (in instanceof CharSequence cs) {
+				if (string) {
+					return cs.toString();
+				}
+				else if (expected.isInstance(in)) {
+					return in;
+				}
+				else if (utf8) {
+					return new Utf8(cs.toString());
+				}
+			}
+			else if (string && in instanceof GenericEnumSymbol<?>) {
+				return in.toString();
+			}
+
+			if (DIRECT_TYPES.contains(in.getClass())) {
+				return in;
+			}
+
+			throw new ValueMappingException("Unable to map " + in.getClass().getName() + " to " + expected.getName());
+		}
+
+	}
+
+	static final class Failing extends DecoderNode {
+
+		private final String message;
+
+		Failing(String message) {
+			this.message = message;
+		}
+
+		@Override
+		Object decode(Object in) throws ValueMappingException {
+			throw new ValueMappingException(message);
+		}
+
+	}
+
+}
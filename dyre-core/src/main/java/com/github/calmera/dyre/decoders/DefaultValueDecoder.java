@@ -0,0 +1,335 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.decoders;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.LogicalConversions;
+import com.github.calmera.dyre.ValueCodec;
+import com.github.calmera.dyre.ValueCodecs;
+import com.github.calmera.dyre.ValueMappingException;
+import org.apache.avro.Conversion;
+import org.apache.avro.Schema;
+
+/**
+ * Decodes values by compiling a {@link DecoderNode} for every combination of expected java
+ * type and field schema it encounters. Compiled decoders are cached and reused for every
+ * value decoded for that type and schema. Values decoded without a schema use decoders
+ * compiled for the type alone.
+ *
+ * Unions with several non-null types are decoded into a sealed type using the permitted
+ * subclass named after the schema of the branch, or into the natural java type of the
+ * branch when the expected type is {@link Object}. Types with a registered
+ * {@link ValueCodec} are decoded by their codec.
+ *
+ * @author Daan Gerits
+ * @author Tim Ysewyn
+ */
+
+public class DefaultValueDecoder implements ValueDecoder {
+
+	// -- compiled decoders are dropped all at once when schemas keep on coming, avoiding
+	// -- unbounded growth
+	private static final int MAX_DECODERS = 1024;
+
+	// -- copy on write
+	private volatile Map<DecoderKey, DecoderNode> decoders = new HashMap<>();
+
+	@Override
+	public Object decode(Type expectedType, Object actualValue, Annotation[] annotations) throws ValueMappingException {
+		return decode(expectedType, null, actualValue, annotations);
+	}
+
+	@Override
+	public Object decode(Type expectedType, Schema schema, Object actualValue, Annotation[] annotations)
+			throws ValueMappingException {
+		// -- return null if the actual field value is null
+		if (actualValue == null) {
+			return null;
+		}
+
+		return decoder(expectedType, schema, false).decode(actualValue);
+	}
+
+	@Override
+	public Object decodeTrusted(Type expectedType, Schema schema, Object actualValue, Annotation[] annotations)
+			throws ValueMappingException {
+		if (actualValue == null) {
+			return null;
+		}
+
+		return decoder(expectedType, schema, true).decode(actualValue);
+	}
+
+	DecoderNode decoder(Type expectedType, Schema schema, boolean trusted) {
+		DecoderKey key = new DecoderKey(expectedType, schema, trusted);
+
+		DecoderNode decoder = decoders.get(key);
+		if (decoder != null) {
+			return decoder;
+		}
+
+		synchronized (this) {
+			decoder = decoders.get(key);
+			if (decoder == null) {
+				decoder = compile(expectedType, schema, trusted);
+
+				Map<DecoderKey, DecoderNode> updated = (decoders.size() < MAX_DECODERS) ? new HashMap<>(decoders)
+						: new HashMap<>();
+				updated.put(key, decoder);
+				decoders = updated;
+			}
+
+			return decoder;
+		}
+	}
+
+	/**
+	 * Compile the decoder of the type and schema. Trusted decoders rely on the record holding
+	 * values of the type its schema prescribes, skipping the checks of their class.
+	 */
+	DecoderNode compile(Type expectedType, Schema schema, boolean trusted) {
+		if (isMultiBranchUnion(schema)) {
+			return compileUnion(expectedType, schema, trusted);
+		}
+
+		schema = nonNullBranch(schema);
+
+		if (expectedType == Object.class && schema != null) {
+			DecoderNode naturalNode = naturalNode(schema, trusted);
+			if (naturalNode != null) {
+				return naturalNode;
+			}
+		}
+
+		if (expectedType instanceof Class<?> expectedClassType) {
+			ValueCodec<Object> codec = ValueCodecs.codec(expectedClassType, (schema != null) ? schema.getType() : null);
+
+			if (codec != null) {
+				return new DecoderNode.CodecNode(codec, schema);
+			}
+			else if (expectedClassType.isSealed() && schema != null) {
+				return permittedNode(expectedClassType, schema, trusted);
+			}
+			else if (DynamicRecord.class.isAssignableFrom(expectedClassType)) {
+				return new DecoderNode.RecordNode(expectedClassType, trusted, this);
+			}
+			else if (expectedClassType == UUID.class && schema != null && schema.getType() == Schema.Type.FIXED) {
+				return (schema.getFixedSize() == 16) ? new DecoderNode.FixedUuidNode()
+						: new DecoderNode.Failing("unable to read a uuid from a fixed of " + schema.getFixedSize()
+								+ " bytes");
+			}
+			else if (expectedClassType == ByteBuffer.class || expectedClassType == byte[].class) {
+				return new DecoderNode.BytesNode(expectedClassType);
+			}
+			else if (expectedClassType.isEnum()) {
+				return new DecoderNode.EnumNode((Class<? extends Enum>) expectedClassType, schema);
+			}
+
+			// -- logical types, stored as their default schema when decoding without a schema
+			Schema logicalSchema = (schema != null) ? schema : LogicalConversions.defaultSchema(expectedClassType);
+			Conversion<?> conversion = (logicalSchema != null) ? LogicalConversions.conversion(logicalSchema) : null;
+			if (conversion != null && conversion.getConvertedType() == expectedClassType) {
+				return new DecoderNode.LogicalNode(conversion, logicalSchema);
+			}
+
+			Class<?> schemaClass = (schema != null) ? javaClass(schema.getType()) : null;
+
+			// -- primitives are held by the record in their boxed form
+			Class<?> boxedClass = MethodType.methodType(expectedClassType).wrap().returnType();
+
+			if (trusted && schema != null) {
+				if (schemaClass == boxedClass
+						|| (expectedClassType == CharSequence.class && schema.getType() == Schema.Type.STRING)) {
+					return new DecoderNode.Identity();
+				}
+				else if (expectedClassType == String.class) {
+					return new DecoderNode.ToStringNode();
+				}
+			}
+
+			DecoderNode valueNode = new DecoderNode.ValueNode(expectedClassType);
+			return (schemaClass == boxedClass) ? new DecoderNode.PassThrough(schemaClass, valueNode) : valueNode;
+		}
+		else if (expectedType instanceof ParameterizedType parameterizedExpectedType
+				&& parameterizedExpectedType.getRawType() instanceof Class<?> rawReturnType) {
+			Type[] typeArguments = parameterizedExpectedType.getActualTypeArguments();
+
+			if (List.class.isAssignableFrom(rawReturnType)) {
+				Schema elementSchema = (schema != null && schema.getType() == Schema.Type.ARRAY)
+						? schema.getElementType() : null;
+
+				return listNode(compile(typeArguments[0], elementSchema, trusted));
+			}
+			else if (Map.class.isAssignableFrom(rawReturnType)) {
+				Schema valueSchema = (schema != null && schema.getType() == Schema.Type.MAP) ? schema.getValueType()
+						: null;
+
+				return mapNode(compile(typeArguments[0], null, false),
+						compile(typeArguments[1], valueSchema, trusted));
+			}
+		}
+
+		return new DecoderNode.Failing("Reached the end of the line. We have no idea what's happening!");
+	}
+
+	/**
+	 * Compile a union with several non-null branches, every branch being compiled into the
+	 * expected type on its own. The branch of a value is looked up by the name of its schema
+	 * or by its avro type when decoding.
+	 */
+	private DecoderNode compileUnion(Type expectedType, Schema union, boolean trusted) {
+		Map<String, DecoderNode> namedBranches = new HashMap<>();
+		Map<Schema.Type, DecoderNode> branches = new EnumMap<>(Schema.Type.class);
+
+		for (Schema branch : union.getTypes()) {
+			if (branch.getType() == Schema.Type.NULL) {
+				continue;
+			}
+
+			DecoderNode node = compile(expectedType, branch, trusted);
+			if (DecoderNode.UnionNode.isNamed(branch.getType())) {
+				namedBranches.put(branch.getFullName(), node);
+			}
+			else {
+				branches.put(branch.getType(), node);
+			}
+		}
+
+		return new DecoderNode.UnionNode(namedBranches, branches);
+	}
+
+	/**
+	 * Compile the schema into the permitted subclass of a sealed type carrying the same name
+	 * as the schema.
+	 */
+	private DecoderNode permittedNode(Class<?> sealedClass, Schema schema, boolean trusted) {
+		for (Class<?> permitted : sealedClass.getPermittedSubclasses()) {
+			if (permitted.getSimpleName().equals(schema.getName())) {
+				return compile(permitted, schema, trusted);
+			}
+		}
+
+		return new DecoderNode.Failing(
+				"none of the permitted subclasses of " + sealedClass.getName() + " matches " + schema.getFullName());
+	}
+
+	/**
+	 * Compile the schema into the java type which represents its values best, used for
+	 * values which are only known as an {@link Object}.
+	 */
+	private DecoderNode naturalNode(Schema schema, boolean trusted) {
+		Conversion<?> conversion = LogicalConversions.conversion(schema);
+		if (conversion != null) {
+			return new DecoderNode.LogicalNode(conversion, schema);
+		}
+
+		return switch (schema.getType()) {
+		case RECORD -> new DecoderNode.GenericRecordNode();
+		case ARRAY -> listNode(compile(Object.class, schema.getElementType(), trusted));
+		case MAP -> mapNode(compile(String.class, null, false),
+				compile(Object.class, schema.getValueType(), trusted));
+		case ENUM, STRING -> trusted ? new DecoderNode.ToStringNode() : new DecoderNode.ValueNode(String.class);
+		case BYTES, FIXED -> new DecoderNode.BytesNode(ByteBuffer.class);
+		case INT, LONG, FLOAT, DOUBLE, BOOLEAN -> trusted ? new DecoderNode.Identity()
+				: new DecoderNode.PassThrough(javaClass(schema.getType()),
+						new DecoderNode.ValueNode(javaClass(schema.getType())));
+		default -> null;
+		};
+	}
+
+	DecoderNode listNode(DecoderNode elementNode) {
+		return new DecoderNode.ListNode(elementNode);
+	}
+
+	DecoderNode mapNode(DecoderNode keyNode, DecoderNode valueNode) {
+		return new DecoderNode.MapNode(keyNode, valueNode);
+	}
+
+	private static boolean isMultiBranchUnion(Schema schema) {
+		if (schema == null || schema.getType() != Schema.Type.UNION) {
+			return false;
+		}
+
+		int branches = 0;
+		for (Schema type : schema.getTypes()) {
+			if (type.getType() != Schema.Type.NULL) {
+				branches++;
+			}
+		}
+
+		return branches > 1;
+	}
+
+	private static Schema nonNullBranch(Schema schema) {
+		if (schema == null || schema.getType() != Schema.Type.UNION) {
+			return schema;
+		}
+
+		Schema branch = null;
+		for (Schema type : schema.getTypes()) {
+			if (type.getType() == Schema.Type.NULL) {
+				continue;
+			}
+
+			branch = type;
+		}
+
+		return branch;
+	}
+
+	private static Class<?> javaClass(Schema.Type type) {
+		return switch (type) {
+		case INT -> Integer.class;
+		case LONG -> Long.class;
+		case FLOAT -> Float.class;
+		case DOUBLE -> Double.class;
+		case BOOLEAN -> Boolean.class;
+		default -> null;
+		};
+	}
+
+	/**
+	 * Identifies a compiled decoder by the expected type, the identity of the schema and
+	 * whether the values are trusted.
+	 */
+	private record DecoderKey(Type type, Schema schema, boolean trusted) {
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof DecoderKey other && type.equals(other.type) && schema == other.schema
+					&& trusted == other.trusted;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * type.hashCode() + System.identityHashCode(schema)) + Boolean.hashCode(trusted);
+		}
+
+	}
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.decoders;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.calmera.dyre.ValueMappingException;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+
+/**
+ * A {@link ValueDecoder} decoding lists and maps into read-only views on top of the avro
+ * array or map, instead of copying them. Elements are only decoded when they are
+ * accessed, optionally caching the decoded elements within the view. Views reflect the
+ * avro container they have been created from.
+ *
+ * Decoding failures of individual elements surface when accessing the element, wrapped in
+ * an {@link IllegalStateException}.
+ *
+ * @author Daan Gerits
+ */
+public class LazyValueDecoder extends DefaultValueDecoder {
+
+	private final boolean cacheElements;
+
+	public LazyValueDecoder() {
+		this(false);
+	}
+
+	/**
+	 * @param cacheElements true to keep the decoded elements within the view
+	 */
+	public LazyValueDecoder(boolean cacheElements) {
+		this.cacheElements = cacheElements;
+	}
+
+	@Override
+	DecoderNode listNode(DecoderNode elementNode) {
+		return new DecoderNode() {
+			@Override
+			Object decode(Object in) throws ValueMappingException {
+				if (!(in instanceof GenericData.Array<?> array)) {
+					throw new ValueMappingException("Expected a " + GenericData.Array.class.getName()
+							+ " but received a " + in.getClass().getName());
+				}
+
+				return new ListView(array, elementNode);
+			}
+		};
+	}
+
+	@Override
+	DecoderNode mapNode(DecoderNode keyNode, DecoderNode valueNode) {
+		return new DecoderNode() {
+			@Override
+			Object decode(Object in) throws ValueMappingException {
+				if (!(in instanceof Map<?, ?> m)) {
+					throw new ValueMappingException(
+							"Expected a " + Map.class.getName() + " but received a " + in.getClass().getName());
+				}
+
+				return new MapView((Map<Object, Object>) m, keyNode, valueNode);
+			}
+		};
+	}
+
+	private static Object decodeElement(DecoderNode node, Object in, IdentityHashMap<Object, Object> cache) {
+		if (in == null) {
+			return null;
+		}
+
+		if (cache != null && cache.containsKey(in)) {
+			return cache.get(in);
+		}
+
+		Object result;
+		try {
+			result = node.decode(in);
+		}
+		catch (ValueMappingException vme) {
+			throw new IllegalStateException("unable to decode " + in, vme);
+		}
+
+		if (cache != null) {
+			cache.put(in, result);
+		}
+
+		return result;
+	}
+
+	private static Object decodeKey(DecoderNode node, Object in) {
+		try {
+			return DecoderNode.decodeNullable(node, in);
+		}
+		catch (ValueMappingException vme) {
+			throw new IllegalStateException("unable to decode key " + in, vme);
+		}
+	}
+
+	/**
+	 * Read-only list on top of an avro array.
+	 */
+	private final class ListView extends AbstractList<Object> {
+
+		private final GenericData.Array<?> array;
+
+		private final DecoderNode elementNode;
+
+		// -- keyed by the identity of the avro element
+		private final IdentityHashMap<Object, Object> cache;
+
+		ListView(GenericData.Array<?> array, DecoderNode elementNode) {
+			this.array = array;
+			this.elementNode = elementNode;
+			this.cache = cacheElements ? new IdentityHashMap<>() : null;
+		}
+
+		@Override
+		public Object get(int index) {
+			return decodeElement(elementNode, array.get(index), cache);
+		}
+
+		@Override
+		public int size() {
+			return array.size();
+		}
+
+	}
+
+	/**
+	 * Read-only map on top of an avro map. Avro maps use either {@link Utf8} or
+	 * {@link String} keys, depending on where they came from, so lookups try both.
+	 */
+	private final class MapView extends AbstractMap<Object, Object> {
+
+		private final Map<Object, Object> map;
+
+		private final DecoderNode keyNode;
+
+		private final DecoderNode valueNode;
+
+		// -- keyed by the identity of the avro value
+		private final IdentityHashMap<Object, Object> cache;
+
+		private Set<Map.Entry<Object, Object>> entrySet;
+
+		MapView(Map<Object, Object> map, DecoderNode keyNode, DecoderNode valueNode) {
+			this.map = map;
+			this.keyNode = keyNode;
+			this.valueNode = valueNode;
+			this.cache = cacheElements ? new IdentityHashMap<>() : null;
+		}
+
+		@Override
+		public Object get(Object key) {
+			return decodeElement(valueNode, map.get(avroKey(key)), cache);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return map.containsKey(avroKey(key));
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public Set<Map.Entry<Object, Object>> entrySet() {
+			if (entrySet == null) {
+				entrySet = new AbstractSet<>() {
+					@Override
+					public Iterator<Map.Entry<Object, Object>> iterator() {
+						Iterator<Map.Entry<Object, Object>> entries = map.entrySet().iterator();
+
+						return new Iterator<>() {
+							@Override
+							public boolean hasNext() {
+								return entries.hasNext();
+							}
+
+							@Override
+							public Map.Entry<Object, Object> next() {
+								Map.Entry<Object, Object> entry = entries.next();
+								return new AbstractMap.SimpleImmutableEntry<>(decodeKey(keyNode, entry.getKey()),
+										decodeElement(valueNode, entry.getValue(), cache));
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return map.size();
+					}
+				};
+			}
+
+			return entrySet;
+		}
+
+		private Object avroKey(Object key) {
+			if (key == null || map.containsKey(key)) {
+				return key;
+			}
+
+			Object alternative;
+			if (key instanceof Utf8) {
+				alternative = key.toString();
+			}
+			else if (key instanceof Enum<?> e) {
+				alternative = map.containsKey(e.name()) ? e.name() : new Utf8(e.name());
+			}
+			else {
+				alternative = new Utf8(key.toString());
+			}
+
+			return alternative;
+		}
+
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.decoders;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import com.github.calmera.dyre.ValueMappingException;
+import org.apache.avro.Schema;
+
+/**
+ * @author Daan Gerits
+ * @author Tim Ysewyn
+ */
+public interface ValueDecoder {
+
+	ValueDecoder DEFAULT_DECODER = new DefaultValueDecoder();
+
+	Object decode(Type expected, Object actualValue, Annotation[] annotations) throws ValueMappingException;
+
+	/**
+	 * Decode a value read from a field with the given schema. Decoders able to take
+	 * advantage of the schema override this method, others decode without it.
+	 * @param expected the type to decode into
+	 * @param schema the schema of the field, or null if unknown
+	 * @param actualValue the value to decode
+	 * @param annotations the annotations of the accessor
+	 * @return the decoded value
+	 * @throws ValueMappingException if the value can't be decoded
+	 */
+	default Object decode(Type expected, Schema schema, Object actualValue, Annotation[] annotations)
+			throws ValueMappingException {
+		return decode(expected, actualValue, annotations);
+	}
+
+	/**
+	 * Decode a value read through a getter of a validated binding. The schema is known to
+	 * match the expected type, so decoders may skip checking the class of the value.
+	 * @param expected the type to decode into
+	 * @param schema the schema of the field
+	 * @param actualValue the value to decode
+	 * @param annotations the annotations of the accessor
+	 * @return the decoded value
+	 * @throws ValueMappingException if the value can't be decoded
+	 */
+	default Object decodeTrusted(Type expected, Schema schema, Object actualValue, Annotation[] annotations)
+			throws ValueMappingException {
+		return decode(expected, schema, actualValue, annotations);
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.encoders;
+
+import java.lang.annotation.Annotation;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.github.calmera.dyre.ValueMappingException;
+import org.apache.avro.Schema;
+
+/**
+ * Encodes values by compiling each schema it encounters into a tree of {@link EncoderNode}s,
+ * which are cached by schema identity and reused for every value encoded for that schema.
+ * Values written through validated bindings are encoded by a tree of their own, compiled
+ * without checking the class of the values.
+ *
+ * @author Daan Gerits
+ */
+public class DefaultValueEncoder implements ValueEncoder {
+
+	// -- compiled encoders are dropped all at once when schemas keep on coming, avoiding
+	// -- unbounded growth
+	private static final int MAX_ENCODERS = 1024;
+
+	// -- copy on write, keyed by schema identity
+	private volatile Map<Schema, EncoderNode> encoders = new IdentityHashMap<>();
+
+	// -- copy on write, keyed by schema identity
+	private volatile Map<Schema, EncoderNode> trustedEncoders = new IdentityHashMap<>();
+
+	public Object encode(Schema schema, Object actualValue, Annotation[] annotations) throws ValueMappingException {
+		return encoder(schema).encode(actualValue, annotations);
+	}
+
+	@Override
+	public Object encodeInto(Schema schema, Object actualValue, Object current, Annotation[] annotations)
+			throws ValueMappingException {
+		return trustedEncoder(schema).encodeInto(actualValue, current, annotations);
+	}
+
+	EncoderNode encoder(Schema schema) {
+		EncoderNode encoder = encoders.get(schema);
+		if (encoder != null) {
+			return encoder;
+		}
+
+		synchronized (this) {
+			encoder = encoders.get(schema);
+			if (encoder == null) {
+				encoder = EncoderNode.compile(schema, false);
+				encoders = with(encoders, schema, encoder);
+			}
+
+			return encoder;
+		}
+	}
+
+	EncoderNode trustedEncoder(Schema schema) {
+		EncoderNode encoder = trustedEncoders.get(schema);
+		if (encoder != null) {
+			return encoder;
+		}
+
+		synchronized (this) {
+			encoder = trustedEncoders.get(schema);
+			if (encoder == null) {
+				encoder = EncoderNode.compile(schema, true);
+				trustedEncoders = with(trustedEncoders, schema, encoder);
+			}
+
+			return encoder;
+		}
+	}
+
+	private static Map<Schema, EncoderNode> with(Map<Schema, EncoderNode> encoders, Schema schema,
+			EncoderNode encoder) {
+		Map<Schema, EncoderNode> updated = (encoders.size() < MAX_ENCODERS) ? new IdentityHashMap<>(encoders)
+				: new IdentityHashMap<>();
+		updated.put(schema, encoder);
+
+		return updated;
+	}
+
+}
@@ -0,0 +1,649 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.encoders;
+
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.DyreUtils;
+import com.github.calmera.dyre.EnumMapping;
+import com.github.calmera.dyre.LogicalConversions;
+import com.github.calmera.dyre.ValueCodec;
+import com.github.calmera.dyre.ValueCodecs;
+import com.github.calmera.dyre.ValueMappingException;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Encodes values for one particular schema. A schema is compiled into a tree of nodes
+ * once, after which encoding a value doesn't need to inspect the schema anymore.
+ *
+ * @author Daan Gerits
+ */
+abstract class EncoderNode {
+
+	/**
+	 * Compile the schema into the node encoding values for it, taking care of null values.
+	 * Trusted nodes encode values written through the setters of a validated binding, whose
+	 * types are known to match the schema, so they don't check the class of the values.
+	 * @param schema the schema to compile
+	 * @param trusted whether the values are known to match the schema
+	 * @return the node encoding values for the schema
+	 */
+	static EncoderNode compile(Schema schema, boolean trusted) {
+		EncoderNode node = compileValue(schema, trusted);
+
+		return schema.isNullable() ? new Nullable(node) : new Required(node);
+	}
+
+	private static EncoderNode compileValue(Schema schema, boolean trusted) {
+		EncoderNode node = compileBuiltIn(schema, trusted);
+
+		// -- only look codecs up for the avro types they are registered for
+		return ValueCodecs.handles(schema.getType()) ? new CodecNode(schema, node) : node;
+	}
+
+	private static EncoderNode compileBuiltIn(Schema schema, boolean trusted) {
+		Conversion<?> conversion = LogicalConversions.conversion(schema);
+		if (conversion != null) {
+			return new LogicalNode(conversion, schema, compileRaw(schema, trusted));
+		}
+
+		return compileRaw(schema, trusted);
+	}
+
+	private static EncoderNode compileRaw(Schema schema, boolean trusted) {
+		return switch (schema.getType()) {
+		case RECORD -> new RecordNode(trusted);
+		case ARRAY -> new ArrayNode(schema, compile(schema.getElementType(), trusted), trusted);
+		case MAP -> new MapNode(compile(schema.getValueType(), trusted), trusted);
+		case UNION -> compileUnion(schema, trusted);
+		case ENUM -> new EnumNode(schema, trusted);
+		case FIXED -> new FixedNode(schema, trusted);
+		case STRING -> new StringNode(trusted);
+		case BYTES -> new BytesNode(trusted);
+		case INT -> trusted ? new PassThrough() : new TypeCheck(Integer.class);
+		case LONG -> trusted ? new PassThrough() : new TypeCheck(Long.class);
+		case FLOAT -> trusted ? new PassThrough() : new TypeCheck(Float.class);
+		case DOUBLE -> trusted ? new PassThrough() : new TypeCheck(Double.class);
+		case BOOLEAN -> trusted ? new PassThrough() : new TypeCheck(Boolean.class);
+		case NULL -> new NullNode();
+		};
+	}
+
+	private static EncoderNode compileUnion(Schema schema, boolean trusted) {
+		if (schema.getTypes().size() == 1 || (schema.getTypes().size() == 2) && (schema.isNullable())) {
+			Schema actualType = null;
+			for (Schema subSchema : schema.getTypes()) {
+				if (subSchema.getType().equals(Schema.Type.NULL)) {
+					continue;
+				}
+
+				actualType = subSchema;
+			}
+
+			return (actualType != null) ? compileValue(actualType, trusted) : new NullNode();
+		}
+
+		return new UnionNode(schema, trusted);
+	}
+
+	/**
+	 * Cast the value into the expected type, checking its class unless the node is trusted.
+	 */
+	private static <T> T expect(boolean trusted, Class<T> expected, Object value) throws ValueMappingException {
+		return trusted ? (T) value : DyreUtils.expectType(expected, value);
+	}
+
+	/**
+	 * Encode the given value.
+	 * @param value the value to encode, never null unless the node handles nulls itself
+	 * @param annotations the annotations of the setter
+	 * @return the encoded value
+	 * @throws ValueMappingException if the value can't be encoded
+	 */
+	abstract Object encode(Object value, Annotation[] annotations) throws ValueMappingException;
+
+	/**
+	 * Encode the given value for a validated binding, reusing the current value of the
+	 * field where possible.
+	 * @param value the value to encode
+	 * @param current the value the field currently holds, possibly null
+	 * @param annotations the annotations of the setter
+	 * @return the encoded value
+	 * @throws ValueMappingException if the value can't be encoded
+	 */
+	Object encodeInto(Object value, Object current, Annotation[] annotations) throws ValueMappingException {
+		return encode(value, annotations);
+	}
+
+	/**
+	 * Passes null values as is.
+	 */
+	static final class Nullable extends EncoderNode {
+
+		private final EncoderNode node;
+
+		Nullable(EncoderNode node) {
+			this.node = node;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			return (value == null) ? null : node.encode(value, annotations);
+		}
+
+		@Override
+		Object encodeInto(Object value, Object current, Annotation[] annotations) throws ValueMappingException {
+			return (value == null) ? null : node.encodeInto(value, current, annotations);
+		}
+
+	}
+
+	/**
+	 * Refuses null values.
+	 */
+	static final class Required extends EncoderNode {
+
+		private final EncoderNode node;
+
+		Required(EncoderNode node) {
+			this.node = node;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			if (value == null) {
+				throw new ValueMappingException("not allowed to set the value for a non-nullable field to null");
+			}
+
+			return node.encode(value, annotations);
+		}
+
+		@Override
+		Object encodeInto(Object value, Object current, Annotation[] annotations) throws ValueMappingException {
+			if (value == null) {
+				throw new ValueMappingException("not allowed to set the value for a non-nullable field to null");
+			}
+
+			return node.encodeInto(value, current, annotations);
+		}
+
+	}
+
+	/**
+	 * Encodes values using the {@link ValueCodec} registered for their class, falling back
+	 * to the built-in node for values without a codec.
+	 */
+	static final class CodecNode extends EncoderNode {
+
+		private final Schema schema;
+
+		private final EncoderNode fallback;
+
+		CodecNode(Schema schema, EncoderNode fallback) {
+			this.schema = schema;
+			this.fallback = fallback;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			ValueCodec<Object> codec = ValueCodecs.codec(value.getClass(), schema.getType());
+
+			return (codec != null) ? codec.encode(value, schema) : fallback.encode(value, annotations);
+		}
+
+		@Override
+		Object encodeInto(Object value, Object current, Annotation[] annotations) throws ValueMappingException {
+			ValueCodec<Object> codec = ValueCodecs.codec(value.getClass(), schema.getType());
+
+			return (codec != null) ? codec.encode(value, schema) : fallback.encodeInto(value, current, annotations);
+		}
+
+	}
+
+	/**
+	 * Converts values of the java type of a logical type into their raw avro value. Values
+	 * which already are of the raw type are encoded as such.
+	 */
+	static final class LogicalNode extends EncoderNode {
+
+		private final Conversion<Object> conversion;
+
+		private final Schema schema;
+
+		private final EncoderNode rawNode;
+
+		LogicalNode(Conversion<?> conversion, Schema schema, EncoderNode rawNode) {
+			this.conversion = (Conversion<Object>) conversion;
+			this.schema = schema;
+			this.rawNode = rawNode;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			if (!conversion.getConvertedType().isInstance(value)) {
+				return rawNode.encode(value, annotations);
+			}
+
+			try {
+				return Conversions.convertToRawType(value, schema, schema.getLogicalType(), conversion);
+			}
+			catch (AvroRuntimeException ex) {
+				throw new ValueMappingException("unable to encode " + value + " as " + schema.getLogicalType().getName()
+						+ ": " + ex.getMessage(), ex);
+			}
+		}
+
+	}
+
+	static final class RecordNode extends EncoderNode {
+
+		private final boolean trusted;
+
+		RecordNode(boolean trusted) {
+			this.trusted = trusted;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			return expect(trusted, DynamicRecord.class, value).record();
+		}
+
+	}
+
+	/**
+	 * Encodes values into the branch of a union with several non-null types they belong
+	 * to. Records and other named avro values are resolved by the full name of their
+	 * schema, any other value by its class, the branch of a class being resolved once.
+	 */
+	static final class UnionNode extends EncoderNode {
+
+		private final List<Schema> branches = new ArrayList<>();
+
+		private final List<EncoderNode> nodes = new ArrayList<>();
+
+		private final Set<String> namedBranches = new HashSet<>();
+
+		// -- copy on write
+		private volatile Map<Class<?>, EncoderNode> classNodes = new IdentityHashMap<>();
+
+		UnionNode(Schema schema, boolean trusted) {
+			for (Schema branch : schema.getTypes()) {
+				if (branch.getType() == Schema.Type.NULL) {
+					continue;
+				}
+
+				branches.add(branch);
+				nodes.add(compileValue(branch, trusted));
+
+				if (isNamed(branch.getType())) {
+					namedBranches.add(branch.getFullName());
+				}
+			}
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			Object raw = (value instanceof DynamicRecord record) ? record.record() : value;
+
+			if (raw instanceof GenericContainer container && isNamed(container.getSchema().getType())) {
+				if (!namedBranches.contains(container.getSchema().getFullName())) {
+					throw new ValueMappingException(
+							container.getSchema().getFullName() + " is not one of the branches of the union");
+				}
+
+				return raw;
+			}
+
+			EncoderNode node = classNodes.get(value.getClass());
+			if (node == null) {
+				node = resolve(value.getClass());
+			}
+
+			return node.encode(value, annotations);
+		}
+
+		private synchronized EncoderNode resolve(Class<?> cls) {
+			EncoderNode node = classNodes.get(cls);
+			if (node != null) {
+				return node;
+			}
+
+			// -- the first branch accepting the class wins
+			node = new Failing("none of the branches of the union accepts a " + cls.getName());
+			for (int i = 0; i < branches.size(); i++) {
+				if (accepts(branches.get(i), cls)) {
+					node = nodes.get(i);
+					break;
+				}
+			}
+
+			Map<Class<?>, EncoderNode> updated = new IdentityHashMap<>(classNodes);
+			updated.put(cls, node);
+			classNodes = updated;
+
+			return node;
+		}
+
+		private static boolean accepts(Schema branch, Class<?> cls) {
+			Conversion<?> conversion = LogicalConversions.conversion(branch);
+			if (conversion != null && conversion.getConvertedType().isAssignableFrom(cls)) {
+				return true;
+			}
+
+			return switch (branch.getType()) {
+			case STRING -> CharSequence.class.isAssignableFrom(cls);
+			case INT -> cls == Integer.class;
+			case LONG -> cls == Long.class;
+			case FLOAT -> cls == Float.class;
+			case DOUBLE -> cls == Double.class;
+			case BOOLEAN -> cls == Boolean.class;
+			case BYTES -> cls == byte[].class || ByteBuffer.class.isAssignableFrom(cls);
+			case FIXED -> cls == byte[].class || ByteBuffer.class.isAssignableFrom(cls)
+					|| (cls == UUID.class && branch.getFixedSize() == 16);
+			case ENUM -> Enum.class.isAssignableFrom(cls)
+					&& (cls.isEnum() ? cls : cls.getSuperclass()).getSimpleName().equals(branch.getName());
+			case ARRAY -> List.class.isAssignableFrom(cls);
+			case MAP -> Map.class.isAssignableFrom(cls);
+			default -> false;
+			};
+		}
+
+		private static boolean isNamed(Schema.Type type) {
+			return type == Schema.Type.RECORD || type == Schema.Type.ENUM || type == Schema.Type.FIXED;
+		}
+
+	}
+
+	static final class ArrayNode extends EncoderNode {
+
+		private final Schema schema;
+
+		private final EncoderNode elementNode;
+
+		private final boolean trusted;
+
+		ArrayNode(Schema schema, EncoderNode elementNode, boolean trusted) {
+			this.schema = schema;
+			this.elementNode = elementNode;
+			this.trusted = trusted;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			List<?> list = expect(trusted, List.class, value);
+			GenericData.Array<Object> result = new GenericData.Array<>(list.size(), schema);
+
+			for (Object obj : list) {
+				result.add(elementNode.encode(obj, annotations));
+			}
+
+			return result;
+		}
+
+	}
+
+	static final class MapNode extends EncoderNode {
+
+		private final EncoderNode valueNode;
+
+		private final boolean trusted;
+
+		MapNode(EncoderNode valueNode, boolean trusted) {
+			this.valueNode = valueNode;
+			this.trusted = trusted;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			Map<?, ?> m = expect(trusted, Map.class, value);
+			Map<Object, Object> result = new HashMap<>();
+
+			for (Map.Entry<?, ?> entry : m.entrySet()) {
+				result.put(encodeKey(entry.getKey()), valueNode.encode(entry.getValue(), annotations));
+			}
+
+			return result;
+		}
+
+		private Object encodeKey(Object key) throws ValueMappingException {
+			if (key == null || key instanceof Utf8) {
+				return key;
+			}
+
+			return new Utf8(expect(trusted, CharSequence.class, key).toString());
+		}
+
+	}
+
+	/**
+	 * Encodes enum constants into the shared symbols of their {@link EnumMapping}.
+	 */
+	static final class EnumNode extends EncoderNode {
+
+		private final Schema schema;
+
+		private final boolean trusted;
+
+		// -- the mapping of the enum class encoded last
+		private volatile EnumMapping<?> mapping;
+
+		EnumNode(Schema schema, boolean trusted) {
+			this.schema = schema;
+			this.trusted = trusted;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			Enum e = expect(trusted, Enum.class, value);
+
+			EnumMapping m = mapping;
+			if (m == null || m.enumClass() != e.getDeclaringClass()) {
+				m = EnumMapping.of(e.getDeclaringClass(), schema);
+				mapping = m;
+			}
+
+			return m.symbol(e);
+		}
+
+	}
+
+	/**
+	 * Encodes byte arrays, buffers and uuids into a fixed. Fixed values own their bytes, so
+	 * setters of validated bindings write into the fixed the field already holds.
+	 */
+	static final class FixedNode extends EncoderNode {
+
+		private final Schema schema;
+
+		private final int size;
+
+		private final boolean trusted;
+
+		FixedNode(Schema schema, boolean trusted) {
+			this.schema = schema;
+			this.size = schema.getFixedSize();
+			this.trusted = trusted;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			if (value instanceof GenericData.Fixed fixed && fixed.getSchema() == schema) {
+				return fixed;
+			}
+			else if (value instanceof UUID && size != 16) {
+				throw new ValueMappingException("unable to store a uuid in a fixed of " + size + " bytes");
+			}
+
+			return write(value, new GenericData.Fixed(schema, new byte[size]));
+		}
+
+		@Override
+		Object encodeInto(Object value, Object current, Annotation[] annotations) throws ValueMappingException {
+			if (value instanceof GenericData.Fixed fixed && fixed.getSchema() == schema) {
+				return fixed;
+			}
+
+			// -- validated bindings only write uuids into fixed values of 16 bytes
+			GenericData.Fixed target = (current instanceof GenericData.Fixed fixed && fixed.getSchema() == schema)
+					? fixed : new GenericData.Fixed(schema, new byte[size]);
+			return write(value, target);
+		}
+
+		private GenericData.Fixed write(Object value, GenericData.Fixed target) throws ValueMappingException {
+			byte[] bytes = target.bytes();
+
+			if (value instanceof UUID uuid) {
+				ByteBuffer.wrap(bytes).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+				return target;
+			}
+
+			// -- the length of arrays and buffers depends on the value rather than the binding
+			if (value instanceof ByteBuffer buffer) {
+				checkLength(buffer.remaining());
+				buffer.duplicate().get(bytes);
+			}
+			else {
+				byte[] source = expect(trusted, byte[].class, value);
+				checkLength(source.length);
+				System.arraycopy(source, 0, bytes, 0, size);
+			}
+
+			return target;
+		}
+
+		private void checkLength(int length) throws ValueMappingException {
+			if (length != size) {
+				throw new ValueMappingException(
+						"expected " + size + " bytes for " + schema.getFullName() + " but received " + length);
+			}
+		}
+
+	}
+
+	static final class StringNode extends EncoderNode {
+
+		private final boolean trusted;
+
+		StringNode(boolean trusted) {
+			this.trusted = trusted;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			if (value instanceof Utf8 u) {
+				return u;
+			}
+
+			return new Utf8(expect(trusted, CharSequence.class, value).toString());
+		}
+
+	}
+
+	/**
+	 * Stores buffers as is and wraps byte arrays, avro's representation of bytes being a
+	 * {@link ByteBuffer}.
+	 */
+	static final class BytesNode extends EncoderNode {
+
+		private final boolean trusted;
+
+		BytesNode(boolean trusted) {
+			this.trusted = trusted;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			if (value instanceof ByteBuffer buffer) {
+				return buffer;
+			}
+
+			return ByteBuffer.wrap(expect(trusted, byte[].class, value));
+		}
+
+	}
+
+	/**
+	 * Passes values of the expected type as is.
+	 */
+	static final class TypeCheck extends EncoderNode {
+
+		private final Class<?> expected;
+
+		TypeCheck(Class<?> expected) {
+			this.expected = expected;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			return DyreUtils.expectType(expected, value);
+		}
+
+	}
+
+	/**
+	 * Passes the values of trusted nodes as is.
+	 */
+	static final class PassThrough extends EncoderNode {
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) {
+			return value;
+		}
+
+	}
+
+	static final class NullNode extends EncoderNode {
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) {
+			return null;
+		}
+
+	}
+
+	static final class Failing extends EncoderNode {
+
+		private final String message;
+
+		Failing(String message) {
+			this.message = message;
+		}
+
+		@Override
+		Object encode(Object value, Annotation[] annotations) throws ValueMappingException {
+			throw new ValueMappingException(message);
+		}
+
+	}
+
+}
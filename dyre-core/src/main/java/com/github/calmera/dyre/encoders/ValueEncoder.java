@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.encoders;
+
+import java.lang.annotation.Annotation;
+
+import com.github.calmera.dyre.ValueMappingException;
+import org.apache.avro.Schema;
+
+/**
+ * @author Daan Gerits
+ */
+public interface ValueEncoder {
+
+	ValueEncoder DEFAULT_ENCODER = new DefaultValueEncoder();
+
+	Object encode(Schema schema, Object actualValue, Annotation[] annotations) throws ValueMappingException;
+
+	/**
+	 * Encode a value written through a setter of a validated binding, reusing the value the
+	 * field currently holds where possible, like writing into its fixed. The type of the
+	 * value is known to match the schema, so encoders may skip checking its class.
+	 * @param schema the schema of the field
+	 * @param actualValue the value to encode
+	 * @param current the value the field currently holds, or null if it can't be reused
+	 * @param annotations the annotations of the setter
+	 * @return the encoded value, which may be the current value
+	 * @throws ValueMappingException if the value can't be encoded
+	 */
+	default Object encodeInto(Schema schema, Object actualValue, Object current, Annotation[] annotations)
+			throws ValueMappingException {
+		return encode(schema, actualValue, annotations);
+	}
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.serde;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.github.calmera.dyre.AvroUtils;
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.GenericRecordInvocationHandler;
+import com.github.calmera.dyre.LazyRecord;
+import com.github.calmera.dyre.RecordBinder;
+import com.github.calmera.dyre.RecordFactory;
+import com.github.calmera.dyre.decoders.LazyValueDecoder;
+import com.github.calmera.dyre.decoders.ValueDecoder;
+import com.github.calmera.dyre.encoders.ValueEncoder;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Deserializes records written using the schema registry wire format, decoding them in
+ * the given {@link Mode}.
+ *
+ * @author Daan Gerits
+ */
+public class DynamicRecordDeserializer<T> implements Deserializer<T> {
+
+	/**
+	 * The way messages are decoded into records.
+	 */
+	public enum Mode {
+
+		/**
+		 * Decode all fields of the writer schema.
+		 */
+		FULL,
+
+		/**
+		 * Decode all fields of the writer schema without going through the
+		 * {@link KafkaAvroDeserializer}, reusing decoders and readers per thread.
+		 */
+		DIRECT,
+
+		/**
+		 * Hold on to the bytes of the message, only decoding the fields being accessed, see
+		 * {@link LazyRecord}.
+		 */
+		LAZY,
+
+		/**
+		 * Only decode the fields the record interface declares, using a reader schema
+		 * projected from the writer schema. The other fields are skipped by the avro schema
+		 * resolution. Records hold the projected schema, so serializing them writes the
+		 * projected fields only.
+		 */
+		PROJECTED
+
+	}
+
+	/**
+	 * The maximum number of writer schema ids for which the resolved state is kept, shared
+	 * by all deserializers of the same interface, registry client and mode which haven't
+	 * been closed. Deserializers sharing the cache keep the largest size configured.
+	 */
+	public static final String SCHEMA_CACHE_SIZE_CONFIG = "dyre.schema.cache.size";
+
+	public static final int DEFAULT_SCHEMA_CACHE_SIZE = 256;
+
+	/**
+	 * Whether the records of the deserializer cache the values decoded by their getters.
+	 * Disabled by default.
+	 */
+	public static final String VALUE_CACHE_CONFIG = "dyre.value.cache";
+
+	/**
+	 * Whether the records of the deserializer decode lists and maps into read-only views
+	 * instead of copies, using a {@link LazyValueDecoder}. Disabled by default.
+	 */
+	public static final String LAZY_COLLECTIONS_CONFIG = "dyre.lazy.collections";
+
+	// -- shared by all lazy deserializers, so the decoding trees are compiled once
+	private static final ValueDecoder LAZY_DECODER = new LazyValueDecoder(true);
+
+	private static final byte MAGIC_BYTE = 0x0;
+
+	// -- the magic byte followed by the id of the schema
+	private static final int HEADER_SIZE = 5;
+
+	private final Class<T> cls;
+
+	private final KafkaAvroDeserializer inner;
+
+	private final SchemaRegistryClient client;
+
+	private final Mode mode;
+
+	private final boolean reuseRecords;
+
+	// -- keeps the identity of the schemas stable
+	private final SchemaResolutionCache<ResolvedSchema<T>> schemas;
+
+	private final ThreadLocal<DecodeState<T>> decodeStates = ThreadLocal.withInitial(DecodeState::new);
+
+	private ValueDecoder valueDecoder = ValueDecoder.DEFAULT_DECODER;
+
+	private boolean cacheValues;
+
+	private boolean closed;
+
+	public DynamicRecordDeserializer(final Class<T> cls) {
+		this.cls = cls;
+		this.inner = new KafkaAvroDeserializer();
+		this.client = null;
+		this.mode = Mode.FULL;
+		this.reuseRecords = false;
+		this.schemas = SchemaResolutionCache.shared(cls, null, mode, DEFAULT_SCHEMA_CACHE_SIZE);
+	}
+
+	DynamicRecordDeserializer(final Class<T> cls, final SchemaRegistryClient client) {
+		this(cls, client, Mode.FULL);
+	}
+
+	DynamicRecordDeserializer(final Class<T> cls, final SchemaRegistryClient client, final Mode mode) {
+		this(cls, client, mode, false);
+	}
+
+	/**
+	 * @param cls the record interface
+	 * @param client the client used to resolve the writer schemas
+	 * @param mode the way messages are decoded
+	 * @param reuseRecords true to decode a message into the record of the previous message
+	 * of the same schema, decoded by the same thread, which requires callers not to hold on
+	 * to the records they receive. Only used in {@link Mode#DIRECT} and
+	 * {@link Mode#PROJECTED} mode.
+	 */
+	DynamicRecordDeserializer(final Class<T> cls, final SchemaRegistryClient client, final Mode mode,
+			final boolean reuseRecords) {
+		this.cls = cls;
+		this.inner = new KafkaAvroDeserializer(client);
+		this.client = client;
+		this.mode = mode;
+		this.reuseRecords = reuseRecords;
+		this.schemas = SchemaResolutionCache.shared(cls, client, mode, DEFAULT_SCHEMA_CACHE_SIZE);
+	}
+
+	@Override
+	public void configure(final Map<String, ?> deserializerConfig, final boolean isDeserializerForRecordKeys) {
+		inner.configure(deserializerConfig, isDeserializerForRecordKeys);
+
+		Object cacheSize = deserializerConfig.get(SCHEMA_CACHE_SIZE_CONFIG);
+		if (cacheSize != null) {
+			schemas.request(Integer.parseInt(cacheSize.toString()));
+		}
+
+		Object valueCache = deserializerConfig.get(VALUE_CACHE_CONFIG);
+		if (valueCache != null) {
+			cacheValues = Boolean.parseBoolean(valueCache.toString());
+		}
+
+		Object lazyCollections = deserializerConfig.get(LAZY_COLLECTIONS_CONFIG);
+		if (lazyCollections != null) {
+			valueDecoder = Boolean.parseBoolean(lazyCollections.toString()) ? LAZY_DECODER
+					: ValueDecoder.DEFAULT_DECODER;
+		}
+	}
+
+	/**
+	 * The number of writer schema ids evicted from the cache shared by this deserializer.
+	 * @return the number of evictions
+	 */
+	public long schemaCacheEvictions() {
+		return schemas.evictions();
+	}
+
+	@Override
+	public T deserialize(final String topic, final byte[] bytes) {
+		if (mode == Mode.FULL || bytes == null) {
+			GenericRecord gr = (GenericRecord) inner.deserialize(topic, bytes);
+			return RecordFactory.wrap(cls, handler(gr));
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		if (bytes.length < HEADER_SIZE || buffer.get() != MAGIC_BYTE) {
+			throw new SerializationException("Unknown magic byte!");
+		}
+
+		ResolvedSchema<T> schema = schemas.get(buffer.getInt(), this::resolve);
+		if (mode == Mode.LAZY) {
+			return schema.binder.wrap(handler(new LazyRecord(schema.writerSchema, bytes, HEADER_SIZE,
+					bytes.length - HEADER_SIZE)), bytes);
+		}
+
+		DecodeState<T> state = decodeStates.get();
+		try {
+			state.decoder = DecoderFactory.get().binaryDecoder(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE,
+					state.decoder);
+
+			GenericRecord record = schema.readers.get().read(reuseRecords ? state.previous.get(schema) : null,
+					state.decoder);
+			if (reuseRecords) {
+				state.previous.put(schema, record);
+			}
+
+			// -- projected records don't hold the writer schema, so they can't be passed through
+			return (mode == Mode.DIRECT) ? schema.binder.wrap(handler(record), bytes)
+					: schema.binder.wrap(handler(record));
+		}
+		catch (IOException | RuntimeException ex) {
+			throw new SerializationException("Error deserializing Avro message for id " + schema.id, ex);
+		}
+	}
+
+	private GenericRecordInvocationHandler handler(GenericRecord record) {
+		return new GenericRecordInvocationHandler(record, valueDecoder, ValueEncoder.DEFAULT_ENCODER, cacheValues);
+	}
+
+	private ResolvedSchema<T> resolve(int id) {
+		Schema writerSchema;
+		try {
+			writerSchema = (Schema) client.getSchemaById(id).rawSchema();
+		}
+		catch (IOException | RestClientException ex) {
+			throw new SerializationException("Error retrieving Avro schema for id " + id, ex);
+		}
+
+		Schema readerSchema = (mode == Mode.PROJECTED)
+				? AvroUtils.projection((Class<? extends DynamicRecord>) cls, writerSchema) : writerSchema;
+		return new ResolvedSchema<>(id, writerSchema, RecordFactory.binder(cls, readerSchema));
+	}
+
+	@Override
+	public void close() {
+		inner.close();
+
+		if (!closed) {
+			closed = true;
+			schemas.release();
+		}
+	}
+
+	/**
+	 * The writer schema registered under an id, together with the binder of the schema
+	 * records are decoded into, which is the projection of the record interface when
+	 * projecting, and the datum readers resolving the one into the other.
+	 */
+	private static final class ResolvedSchema<T> {
+
+		private final int id;
+
+		private final Schema writerSchema;
+
+		private final RecordBinder<T> binder;
+
+		// -- datum readers aren't meant to be shared between threads, they're dropped with the schema
+		private final ThreadLocal<GenericDatumReader<GenericRecord>> readers;
+
+		ResolvedSchema(int id, Schema writerSchema, RecordBinder<T> binder) {
+			this.id = id;
+			this.writerSchema = writerSchema;
+			this.binder = binder;
+			this.readers = ThreadLocal.withInitial(() -> new GenericDatumReader<>(writerSchema, binder.schema()));
+		}
+
+	}
+
+	/**
+	 * The decoding state of a single thread.
+	 */
+	private static final class DecodeState<T> {
+
+		// -- the record decoded last for every schema, forgotten once the schema is evicted
+		private final Map<ResolvedSchema<T>, GenericRecord> previous = new WeakHashMap<>();
+
+		private BinaryDecoder decoder;
+
+	}
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.serde;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.RecordFactory;
+import com.github.calmera.dyre.RecordSource;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import io.confluent.kafka.serializers.KafkaAvroSerializerConfig;
+import io.confluent.kafka.serializers.subject.TopicNameStrategy;
+import io.confluent.kafka.serializers.subject.strategy.SubjectNameStrategy;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serializes records using the schema registry wire format. Serializers created in direct
+ * mode encode records themselves instead of going through the {@link KafkaAvroSerializer},
+ * reusing their encoders, writers and output buffers per thread. They name subjects and
+ * register or look up schemas as configured through the {@link KafkaAvroSerializerConfig}
+ * settings, but reject use.latest.version.
+ *
+ * Direct serializers write records which haven't been modified since they have been
+ * decoded as is, copying the message they have been decoded from, as long as it refers to
+ * the id the schema of the record has been registered under for the topic. Checking that
+ * id only looks the schema up, records whose schema isn't registered for the topic are
+ * encoded again. See {@link RecordFactory#source(Object)}.
+ *
+ * @author Daan Gerits
+ */
+public class DynamicRecordSerializer<T extends DynamicRecord> implements Serializer<T> {
+
+	private static final byte MAGIC_BYTE = 0x0;
+
+	// -- the magic byte followed by the id of the schema
+	private static final int HEADER_SIZE = 5;
+
+	// -- the id of schemas which haven't been registered for the topic
+	private static final int UNREGISTERED = -1;
+
+	// -- writers are dropped all at once when schemas keep on coming, avoiding unbounded growth
+	private static final int MAX_WRITERS = 1024;
+
+	// -- ids are dropped all at once as well, schema instances come and go with the records
+	private static final int MAX_SCHEMA_IDS = 1024;
+
+	private final KafkaAvroSerializer inner;
+
+	private final SchemaRegistryClient client;
+
+	private final boolean direct;
+
+	private boolean isKey;
+
+	private SubjectNameStrategy subjectNameStrategy = new TopicNameStrategy();
+
+	private boolean autoRegisterSchemas = true;
+
+	private final Map<TopicSchema, Integer> schemaIds = new ConcurrentHashMap<>();
+
+	// -- the ids of the schemas of the records passed through
+	private final Map<TopicSchema, Integer> sourceIds = new ConcurrentHashMap<>();
+
+	// -- datum writers aren't meant to be shared between threads
+	private final ThreadLocal<EncodeState> encodeStates = ThreadLocal.withInitial(EncodeState::new);
+
+	public DynamicRecordSerializer() {
+		this.inner = new KafkaAvroSerializer();
+		this.client = null;
+		this.direct = false;
+	}
+
+	DynamicRecordSerializer(final SchemaRegistryClient client) {
+		this(client, false);
+	}
+
+	DynamicRecordSerializer(final SchemaRegistryClient client, final boolean direct) {
+		this.inner = new KafkaAvroSerializer(client);
+		this.client = client;
+		this.direct = direct;
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		this.isKey = isKey;
+		inner.configure(configs, isKey);
+
+		if (direct) {
+			KafkaAvroSerializerConfig config = new KafkaAvroSerializerConfig(configs);
+			if (config.useLatestVersion()) {
+				throw new ConfigException(AbstractKafkaSchemaSerDeConfig.USE_LATEST_VERSION, true,
+						"Not supported by direct serializers");
+			}
+
+			Object strategy = isKey ? config.keySubjectNameStrategy() : config.valueSubjectNameStrategy();
+			if (!(strategy instanceof SubjectNameStrategy)) {
+				throw new ConfigException(isKey ? AbstractKafkaSchemaSerDeConfig.KEY_SUBJECT_NAME_STRATEGY
+						: AbstractKafkaSchemaSerDeConfig.VALUE_SUBJECT_NAME_STRATEGY, strategy.getClass().getName(),
+						"Direct serializers require a " + SubjectNameStrategy.class.getName());
+			}
+
+			this.subjectNameStrategy = (SubjectNameStrategy) strategy;
+			this.autoRegisterSchemas = config.autoRegisterSchema();
+		}
+	}
+
+	@Override
+	public byte[] serialize(String topic, T data) {
+		if (direct) {
+			RecordSource source = RecordFactory.source(data);
+			if (source != null && refersTo(source.message(), sourceId(topic, source.schema()))) {
+				return source.message().clone();
+			}
+		}
+
+		GenericRecord record = null;
+		if (data != null) {
+			record = data.record();
+		}
+
+		try {
+			return (direct && record != null) ? encode(topic, record) : inner.serialize(topic, record);
+		}
+		catch (SerializationException se) {
+			if (record != null) {
+				throw new SerializationException("Unable to serialize " + record.getSchema().getFullName(), se);
+			}
+			else {
+				throw se;
+			}
+		}
+	}
+
+	private byte[] encode(String topic, GenericRecord record) {
+		int schemaId = schemaId(topic, record.getSchema());
+		EncodeState state = encodeStates.get();
+
+		try {
+			state.out.reset();
+			state.out.write(MAGIC_BYTE);
+			state.out.write(schemaId >>> 24);
+			state.out.write(schemaId >>> 16);
+			state.out.write(schemaId >>> 8);
+			state.out.write(schemaId);
+
+			state.encoder = EncoderFactory.get().directBinaryEncoder(state.out, state.encoder);
+			state.writer(record.getSchema()).write(record, state.encoder);
+			state.encoder.flush();
+		}
+		catch (IOException | RuntimeException ex) {
+			throw new SerializationException("Error serializing Avro message", ex);
+		}
+
+		return state.out.toByteArray();
+	}
+
+	private static boolean refersTo(byte[] message, int schemaId) {
+		return message.length >= HEADER_SIZE && message[0] == MAGIC_BYTE && ByteBuffer.wrap(message, 1, 4).getInt() == schemaId;
+	}
+
+	/**
+	 * The id of the schema for the topic, without registering it.
+	 */
+	private int sourceId(String topic, Schema schema) {
+		TopicSchema key = new TopicSchema(topic, schema);
+
+		// -- schemas already registered by this serializer don't need to be looked up
+		Integer id = schemaIds.get(key);
+		if (id == null) {
+			id = sourceIds.get(key);
+		}
+
+		if (id != null) {
+			return id;
+		}
+
+		// -- looked up without locking, threads racing for the same schema get the same answer
+		AvroSchema avroSchema = new AvroSchema(schema);
+		try {
+			id = client.getId(subjectNameStrategy.subjectName(topic, isKey, avroSchema), avroSchema);
+		}
+		catch (RestClientException ex) {
+			// -- only schemas unknown to the registry are remembered, other failures are retried
+			if (ex.getStatus() != 404) {
+				return UNREGISTERED;
+			}
+
+			id = UNREGISTERED;
+		}
+		catch (IOException ex) {
+			return UNREGISTERED;
+		}
+
+		remember(sourceIds, key, id);
+		return id;
+	}
+
+	private int schemaId(String topic, Schema schema) {
+		TopicSchema key = new TopicSchema(topic, schema);
+
+		Integer id = schemaIds.get(key);
+		if (id != null) {
+			return id;
+		}
+
+		// -- registering is idempotent, threads racing for the same schema get the same id
+		AvroSchema avroSchema = new AvroSchema(schema);
+		String subject = subjectNameStrategy.subjectName(topic, isKey, avroSchema);
+		try {
+			id = autoRegisterSchemas ? client.register(subject, avroSchema) : client.getId(subject, avroSchema);
+		}
+		catch (IOException | RestClientException ex) {
+			throw new SerializationException((autoRegisterSchemas ? "Error registering Avro schema "
+					: "Error retrieving Avro schema ") + schema.getFullName() + " for subject " + subject, ex);
+		}
+
+		remember(schemaIds, key, id);
+		return id;
+	}
+
+	private static void remember(Map<TopicSchema, Integer> ids, TopicSchema key, int id) {
+		if (ids.size() >= MAX_SCHEMA_IDS) {
+			ids.clear();
+		}
+
+		ids.put(key, id);
+	}
+
+	@Override
+	public void close() {
+		inner.close();
+	}
+
+	/**
+	 * Identifies a registered schema by the topic it's written to and the identity of the schema.
+	 */
+	private record TopicSchema(String topic, Schema schema) {
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof TopicSchema other && topic.equals(other.topic) && schema == other.schema;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * topic.hashCode() + System.identityHashCode(schema);
+		}
+
+	}
+
+	/**
+	 * The encoding state of a single thread.
+	 */
+	private static final class EncodeState {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private final Map<Schema, GenericDatumWriter<GenericRecord>> writers = new IdentityHashMap<>();
+
+		private BinaryEncoder encoder;
+
+		GenericDatumWriter<GenericRecord> writer(Schema schema) {
+			GenericDatumWriter<GenericRecord> writer = writers.get(schema);
+			if (writer == null) {
+				if (writers.size() >= MAX_WRITERS) {
+					writers.clear();
+				}
+
+				writer = new GenericDatumWriter<>(schema);
+				writers.put(schema, writer);
+			}
+
+			return writer;
+		}
+
+	}
+
+}
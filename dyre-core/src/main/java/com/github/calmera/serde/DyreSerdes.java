@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.serde;
+
+import com.github.calmera.dyre.DynamicRecord;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * @author Daan Gerits
+ */
+public abstract class DyreSerdes {
+
+	public static <T extends DynamicRecord> Serde<T> dynamicSerde(Class<T> cls) {
+		return Serdes.serdeFrom(dynamicSerializer(), dynamicDeserializer(cls));
+	}
+
+	public static <T extends DynamicRecord> Serde<T> dynamicSerde(Class<T> cls,
+			SchemaRegistryClient schemaRegistryClient) {
+		return Serdes.serdeFrom(dynamicSerializer(schemaRegistryClient),
+				dynamicDeserializer(cls, schemaRegistryClient));
+	}
+
+	public static <T extends DynamicRecord> Serializer<T> dynamicSerializer() {
+		return new DynamicRecordSerializer<>();
+	}
+
+	public static <T extends DynamicRecord> Serializer<T> dynamicSerializer(SchemaRegistryClient schemaRegistryClient) {
+		return new DynamicRecordSerializer<>(schemaRegistryClient);
+	}
+
+	public static <T extends DynamicRecord> Deserializer<T> dynamicDeserializer(Class<T> cls) {
+		return new DynamicRecordDeserializer<>(cls);
+	}
+
+	public static <T extends DynamicRecord> Deserializer<T> dynamicDeserializer(Class<T> cls,
+			SchemaRegistryClient schemaRegistryClient) {
+		return new DynamicRecordDeserializer<>(cls, schemaRegistryClient);
+	}
+
+	/**
+	 * Create a deserializer whose records only decode the fields being accessed.
+	 * @param cls the record interface
+	 * @param schemaRegistryClient the client used to resolve the writer schemas
+	 * @param <T> the type of the records
+	 * @return the lazy deserializer
+	 */
+	public static <T extends DynamicRecord> Deserializer<T> lazyDeserializer(Class<T> cls,
+			SchemaRegistryClient schemaRegistryClient) {
+		return new DynamicRecordDeserializer<>(cls, schemaRegistryClient, DynamicRecordDeserializer.Mode.LAZY);
+	}
+
+	/**
+	 * Create a deserializer only decoding the fields declared by the record interface.
+	 * @param cls the record interface
+	 * @param schemaRegistryClient the client used to resolve the writer schemas
+	 * @param <T> the type of the records
+	 * @return the projecting deserializer
+	 * @see DynamicRecordDeserializer.Mode#PROJECTED
+	 */
+	public static <T extends DynamicRecord> Deserializer<T> projectingDeserializer(Class<T> cls,
+			SchemaRegistryClient schemaRegistryClient) {
+		return projectingDeserializer(cls, schemaRegistryClient, false);
+	}
+
+	/**
+	 * Create a deserializer only decoding the fields declared by the record interface.
+	 * @param cls the record interface
+	 * @param schemaRegistryClient the client used to resolve the writer schemas
+	 * @param reuseRecords true to decode every message into the record decoded previously
+	 * for the same schema on the same thread
+	 * @param <T> the type of the records
+	 * @return the projecting deserializer
+	 * @see DynamicRecordDeserializer.Mode#PROJECTED
+	 */
+	public static <T extends DynamicRecord> Deserializer<T> projectingDeserializer(Class<T> cls,
+			SchemaRegistryClient schemaRegistryClient, boolean reuseRecords) {
+		return new DynamicRecordDeserializer<>(cls, schemaRegistryClient, DynamicRecordDeserializer.Mode.PROJECTED,
+				reuseRecords);
+	}
+
+	/**
+	 * Create a serializer encoding records itself, reusing its encoders and buffers per
+	 * thread. Subjects are named and schemas registered or looked up as configured.
+	 * @param schemaRegistryClient the client used to register or look up the schemas
+	 * @param <T> the type of the records
+	 * @return the direct serializer
+	 */
+	public static <T extends DynamicRecord> Serializer<T> directSerializer(SchemaRegistryClient schemaRegistryClient) {
+		return new DynamicRecordSerializer<>(schemaRegistryClient, true);
+	}
+
+	/**
+	 * Create a deserializer decoding records itself, reusing its decoders and readers per
+	 * thread.
+	 * @param cls the record interface
+	 * @param schemaRegistryClient the client used to resolve the writer schemas
+	 * @param reuseRecords true to decode every message into the record decoded previously
+	 * for the same schema on the same thread
+	 * @param <T> the type of the records
+	 * @return the direct deserializer
+	 * @see DynamicRecordDeserializer.Mode#DIRECT
+	 */
+	public static <T extends DynamicRecord> Deserializer<T> directDeserializer(Class<T> cls,
+			SchemaRegistryClient schemaRegistryClient, boolean reuseRecords) {
+		return new DynamicRecordDeserializer<>(cls, schemaRegistryClient, DynamicRecordDeserializer.Mode.DIRECT,
+				reuseRecords);
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.serde;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+
+/**
+ * Bounded cache of the state resolved for the writer schema ids a deserializer comes
+ * across, evicting ids which haven't been used recently once it holds more than its
+ * capacity. Lookups of cached ids don't lock, they only mark the entry as used. Ids are
+ * resolved without holding any lock, the first resolution being kept when several threads
+ * resolve the same id. Evicting goes over the ids in the order they have been cached,
+ * giving every id marked as used a second chance.
+ *
+ * Caches are shared by all deserializers of the same interface, registry client and mode,
+ * for as long as any of them hasn't been released.
+ *
+ * @author Daan Gerits
+ */
+final class SchemaResolutionCache<V> {
+
+	// -- guarded by itself, together with the references of the caches
+	private static final Map<Owner, SchemaResolutionCache<?>> SHARED = new HashMap<>();
+
+	private final Owner owner;
+
+	private int references;
+
+	private final Map<Integer, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	// -- guarded by this, the ids in the order they have been cached
+	private final Queue<Integer> order = new ArrayDeque<>();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private volatile int capacity;
+
+	// -- guarded by this, whether the capacity has been requested explicitly
+	private boolean requested;
+
+	SchemaResolutionCache(int capacity) {
+		this(null, capacity);
+	}
+
+	private SchemaResolutionCache(Owner owner, int capacity) {
+		this.owner = owner;
+		this.capacity = checkCapacity(capacity);
+	}
+
+	/**
+	 * Acquire the cache shared by the deserializers of the given interface, client and
+	 * mode. Every acquired cache should be released once it's no longer used.
+	 * @param cls the record interface
+	 * @param client the client resolving the schema ids
+	 * @param mode the mode of the deserializer
+	 * @param capacity the capacity of the cache when it doesn't exist yet
+	 * @param <V> the type of the resolved state
+	 * @return the shared cache
+	 * @see #release()
+	 */
+	static <V> SchemaResolutionCache<V> shared(Class<?> cls, SchemaRegistryClient client,
+			DynamicRecordDeserializer.Mode mode, int capacity) {
+		synchronized (SHARED) {
+			SchemaResolutionCache<V> cache = (SchemaResolutionCache<V>) SHARED.computeIfAbsent(
+					new Owner(cls, client, mode), owner -> new SchemaResolutionCache<>(owner, capacity));
+			cache.references++;
+
+			return cache;
+		}
+	}
+
+	/**
+	 * Release a shared cache, dropping it together with its client once it has been
+	 * released by all deserializers which acquired it.
+	 */
+	void release() {
+		synchronized (SHARED) {
+			if (owner != null && references > 0 && --references == 0) {
+				SHARED.remove(owner, this);
+			}
+		}
+	}
+
+	/**
+	 * Get the state resolved for the id, resolving it if the cache doesn't hold it.
+	 * @param id the id of the writer schema
+	 * @param resolver resolves the state of ids which aren't cached
+	 * @return the resolved state
+	 */
+	V get(int id, IntFunction<V> resolver) {
+		Entry<V> entry = entries.get(id);
+		if (entry != null) {
+			// -- only written when not set yet, lookups of the same id don't keep on writing it
+			if (!entry.used) {
+				entry.used = true;
+			}
+
+			return entry.value;
+		}
+
+		Entry<V> resolved = new Entry<>(resolver.apply(id));
+		entry = entries.putIfAbsent(id, resolved);
+		if (entry != null) {
+			return entry.value;
+		}
+
+		synchronized (this) {
+			order.add(id);
+			trim();
+		}
+
+		return resolved.value;
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Change the capacity of the cache, evicting ids if it holds more than the new
+	 * capacity.
+	 * @param capacity the maximum number of ids to hold
+	 */
+	synchronized void capacity(int capacity) {
+		this.capacity = checkCapacity(capacity);
+		trim();
+	}
+
+	/**
+	 * Request the capacity configured by one of the deserializers sharing the cache. The
+	 * first request replaces the default capacity, after which the cache keeps the largest
+	 * capacity requested, whichever deserializer is configured last.
+	 * @param capacity the maximum number of ids the deserializer wants to be held
+	 */
+	synchronized void request(int capacity) {
+		if (!requested || capacity > this.capacity) {
+			capacity(capacity);
+		}
+
+		requested = true;
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	long evictions() {
+		return evictions.sum();
+	}
+
+	private void trim() {
+		while (order.size() > capacity) {
+			Integer id = order.remove();
+			Entry<V> entry = entries.get(id);
+
+			if (entry.used) {
+				entry.used = false;
+				order.add(id);
+			}
+			else {
+				entries.remove(id);
+				evictions.increment();
+			}
+		}
+	}
+
+	private static int checkCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("the capacity should at least be 1, not " + capacity);
+		}
+
+		return capacity;
+	}
+
+	private static final class Entry<V> {
+
+		private final V value;
+
+		private volatile boolean used;
+
+		Entry(V value) {
+			this.value = value;
+		}
+
+	}
+
+	private record Owner(Class<?> cls, SchemaRegistryClient client, DynamicRecordDeserializer.Mode mode) {
+	}
+
+}
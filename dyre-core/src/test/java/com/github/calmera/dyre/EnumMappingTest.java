@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.serde.map.models.State;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EnumMappingTest {
+
+	@Test
+	void testSymbolsAreSharedPerSchemaInstance() throws ValueMappingException {
+		Schema schema = SchemaBuilder.enumeration("State").symbols("Open", "Closed");
+
+		EnumMapping<State> mapping = EnumMapping.of(State.class, schema);
+		assertThat(EnumMapping.of(State.class, schema)).isSameAs(mapping);
+		assertThat(mapping.mismatches()).isEmpty();
+
+		assertThat(mapping.symbol(State.Closed)).isSameAs(mapping.symbol(State.Closed))
+				.isEqualTo(new GenericData.EnumSymbol(schema, "Closed"));
+		assertThat(mapping.constant(mapping.symbol(State.Open))).isEqualTo(State.Open);
+		assertThat(mapping.constant(new GenericData.EnumSymbol(schema, "Open"))).isEqualTo(State.Open);
+		assertThat(mapping.constant("Closed")).isEqualTo(State.Closed);
+	}
+
+	@Test
+	void testMismatchesAreReportedUpFront() {
+		Schema schema = SchemaBuilder.enumeration("State").symbols("Open", "Pending");
+
+		EnumMapping<State> mapping = EnumMapping.of(State.class, schema);
+		assertThat(mapping.mismatches()).containsExactly("constant Closed is not a symbol of State",
+				"symbol Pending is not a constant of " + State.class.getName());
+
+		assertThatThrownBy(() -> mapping.symbol(State.Closed)).isInstanceOf(ValueMappingException.class);
+		assertThatThrownBy(() -> mapping.constant("Pending")).isInstanceOf(ValueMappingException.class);
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.dyre;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.serde.TestModel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LazyRecordTest {
+
+	private final Schema pointSchema = SchemaBuilder.record("Point").fields().requiredInt("x").requiredInt("y")
+			.endRecord();
+
+	private final Schema schema = SchemaBuilder.record("Everything").fields()
+			.requiredBoolean("flag")
+			.requiredLong("count")
+			.requiredFloat("ratio")
+			.requiredDouble("value")
+			.requiredString("name")
+			.requiredBytes("data")
+			.name("hash").type().fixed("Hash").size(4).noDefault()
+			.name("state").type().enumeration("State").symbols("Open", "Closed").noDefault()
+			.name("tags").type().array().items().stringType().noDefault()
+			.name("labels").type().map().values().intType().noDefault()
+			.name("point").type(pointSchema).noDefault()
+			.optionalString("nick")
+			.name("last").type().stringType().noDefault()
+			.endRecord();
+
+	@Test
+	void testFieldsAreDecodedOnAccess() throws IOException {
+		GenericData.Record original = everything();
+		byte[] bytes = encode(original, 3);
+
+		LazyRecord lazy = new LazyRecord(schema, bytes, 3, bytes.length - 3);
+
+		// -- the last field first, skipping over all others
+		assertThat(lazy.get("last")).isEqualTo(new Utf8("the end"));
+		assertThat(lazy.get("point")).isEqualTo(original.get("point"));
+		assertThat(lazy.get("name")).isEqualTo(new Utf8("dyre"));
+		assertThat(lazy.get("name")).isSameAs(lazy.get("name"));
+		assertThat(lazy.get("nick")).isNull();
+		assertThat(lazy.isMaterialized()).isFalse();
+
+		assertThat(lazy.materialize()).isEqualTo(original);
+	}
+
+	@Test
+	void testWritesMaterializeTheRecord() throws IOException {
+		byte[] bytes = encode(everything(), 0);
+		LazyRecord lazy = new LazyRecord(schema, bytes, 0, bytes.length);
+		Object name = lazy.get("name");
+
+		lazy.put("count", 7L);
+
+		assertThat(lazy.isMaterialized()).isTrue();
+		assertThat(lazy.get("count")).isEqualTo(7L);
+		assertThat(lazy.get("name")).isSameAs(name);
+		assertThat(lazy.materialize().get("tags")).isEqualTo(List.of(new Utf8("a"), new Utf8("b")));
+	}
+
+	@Test
+	void testHandlersHandOutTheMaterializedRecord() throws IOException {
+		GenericData.Record original = new GenericData.Record(TestModel.SCHEMA);
+		original.put("required_value", "value");
+		original.put("required_enum", new GenericData.EnumSymbol(
+				TestModel.SCHEMA.getField("required_enum").schema(), "Option1"));
+		original.put("string_list", List.of());
+		original.put("string_map", Map.of());
+		byte[] bytes = encode(original, 0);
+
+		TestModel model = RecordFactory.wrap(TestModel.class, new LazyRecord(TestModel.SCHEMA, bytes, 0, bytes.length));
+
+		assertThat(model.getRequiredValue()).isEqualTo("value");
+		assertThat(model.record()).isInstanceOf(GenericData.Record.class).isEqualTo(original);
+	}
+
+	private GenericData.Record everything() {
+		GenericData.Record point = new GenericData.Record(pointSchema);
+		point.put("x", 1);
+		point.put("y", -2);
+
+		GenericData.Record record = new GenericData.Record(schema);
+		record.put("flag", true);
+		record.put("count", 1234567890123L);
+		record.put("ratio", 0.5f);
+		record.put("value", 3.25);
+		record.put("name", new Utf8("dyre"));
+		record.put("data", ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+		record.put("hash", new GenericData.Fixed(schema.getField("hash").schema(), new byte[] { 4, 5, 6, 7 }));
+		record.put("state", new GenericData.EnumSymbol(schema.getField("state").schema(), "Closed"));
+		record.put("tags", List.of(new Utf8("a"), new Utf8("b")));
+		record.put("labels", Map.of(new Utf8("k"), 1, new Utf8("l"), 2));
+		record.put("point", point);
+		record.put("nick", null);
+		record.put("last", new Utf8("the end"));
+		return record;
+	}
+
+	private static byte[] encode(GenericRecord record, int offset) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[offset]);
+
+		BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+		new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+		encoder.flush();
+
+		return out.toByteArray();
+	}
+
+}
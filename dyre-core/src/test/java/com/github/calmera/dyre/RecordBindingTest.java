@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.serde.TestModel;
+import com.github.calmera.serde.map.models.Measurement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecordBindingTest {
+
+	@Test
+	void testBindingIsSharedPerSchemaInstance() {
+		DispatchTable table = DispatchTable.forClass(TestModel.class);
+
+		RecordBinding binding = table.binding(TestModel.SCHEMA);
+		assertThat(table.binding(TestModel.SCHEMA)).isSameAs(binding);
+		assertThat(table.binding(new Schema.Parser().parse(TestModel.SCHEMA.toString()))).isNotSameAs(binding);
+	}
+
+	@Test
+	void testFieldsAreResolvedAgainstTheRecordSchema() {
+		Schema schema = SchemaBuilder.record("TestModel").fields().requiredString("required_value").endRecord();
+		GenericData.Record record = new GenericData.Record(schema);
+		record.put("required_value", "value");
+
+		TestModel model = RecordFactory.wrap(TestModel.class, record);
+
+		assertThat(model.getRequiredValue()).isEqualTo("value");
+		assertThatThrownBy(model::getOptionalValue).isInstanceOf(UnsupportedOperationException.class)
+				.hasMessageContaining("optional_value");
+	}
+
+	@Test
+	void testMatchingBindingsAreTrusted() throws ValueMappingException {
+		RecordFactory.validate(TestModel.class, TestModel.SCHEMA);
+
+		assertThat(DispatchTable.forClass(TestModel.class).binding(TestModel.SCHEMA).trusted()).isTrue();
+	}
+
+	@Test
+	void testAllProblemsAreReportedAtOnce() {
+		Schema schema = SchemaBuilder.record("Measurement").fields().requiredString("count").optionalLong("timestamp")
+				.requiredFloat("ratio").requiredDouble("value").endRecord();
+
+		assertThatThrownBy(() -> RecordFactory.validate(Measurement.class, schema))
+				.isInstanceOf(ValueMappingException.class)
+				.hasMessageContaining("field count: a int can't be mapped onto \"string\"")
+				.hasMessageContaining("field timestamp: a long can't hold the null values")
+				.hasMessageContaining("field valid is not part of Measurement");
+		assertThat(DispatchTable.forClass(Measurement.class).binding(schema).trusted()).isFalse();
+	}
+
+	@Test
+	void testSettersAreValidated() {
+		Schema schema = SchemaBuilder.record("Reading").fields().requiredLong("value").endRecord();
+
+		assertThatThrownBy(() -> RecordFactory.validate(Reading.class, schema))
+				.isInstanceOf(ValueMappingException.class)
+				.hasMessageContaining("setter of field value: a int can't be mapped onto \"long\"");
+	}
+
+	interface Reading extends DynamicRecord {
+
+		long getValue();
+
+		void setValue(int value);
+
+	}
+
+}
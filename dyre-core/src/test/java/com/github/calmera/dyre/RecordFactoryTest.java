@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.TestUtils;
+import com.github.calmera.serde.TestEnum;
+import com.github.calmera.serde.TestModel;
+import com.github.calmera.serde.map.models.Measurement;
+import com.github.calmera.serde.map.models.MutablePerson;
+import com.github.calmera.serde.map.models.State;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordFactoryTest {
+
+	private final DynamicRecords dynamicRecords = new DynamicRecords(null);
+
+	@BeforeEach
+	void setup() {
+		RecordFactory.setEngine(RecordFactory.Engine.GENERATED);
+	}
+
+	@AfterEach
+	void tearDown() {
+		RecordFactory.setEngine(RecordFactory.Engine.PROXY);
+	}
+
+	@Test
+	void testGeneratedClassInsteadOfProxy() {
+		TestModel model = newTestModel();
+
+		assertThat(Proxy.isProxyClass(model.getClass())).isFalse();
+		assertThat(model).isInstanceOf(AbstractDynamicRecord.class);
+		assertThat(newTestModel().getClass()).isSameAs(model.getClass());
+	}
+
+	@Test
+	void testGetAndSet() {
+		TestModel model = newTestModel();
+
+		assertThat(model.getRequiredValue()).isEqualTo("value");
+		assertThat(model.getRequiredEnum()).isEqualTo(TestEnum.Option2);
+		assertThat(model.getOptionalValue()).isNull();
+
+		model.setOptionalValue("optional");
+		model.setRequiredEnum(TestEnum.Option3);
+		assertThat(model.getOptionalValue()).isEqualTo("optional");
+		assertThat(model.getRequiredEnum()).isEqualTo(TestEnum.Option3);
+	}
+
+	@Test
+	void testCollectionAccessors() {
+		TestModel model = newTestModel();
+
+		model.addToStringList("a");
+		model.addToStringList("b");
+		model.removeFromStringList("a");
+		assertThat(model.getStringList()).containsExactly("b");
+
+		model.putIntoStringMap("k", "v");
+		assertThat(model.getStringMap()).containsEntry("k", "v");
+		model.removeFromStringMap("k");
+		assertThat(model.getStringMap()).isEmpty();
+	}
+
+	@Test
+	void testDirectAccess() {
+		TestModel model = newTestModel();
+
+		model.manipulateDirect(TestModel.class, "requiredValue", "direct");
+		assertThat(model.retrieveDirect(TestModel.class, "requiredValue")).isEqualTo("direct");
+	}
+
+	@Test
+	void testEqualsAndHashCode() {
+		TestModel model = newTestModel();
+		TestModel other = newTestModel();
+
+		assertThat(model).isEqualTo(other);
+		assertThat(model.hashCode()).isEqualTo(other.hashCode());
+		assertThat(model.toString()).isEqualTo(model.record().toString());
+
+		other.setRequiredValue("other");
+		assertThat(model).isNotEqualTo(other);
+	}
+
+	@Test
+	void testNestedRecords() throws Exception {
+		Schema schema = new Schema.Parser().parse(TestUtils.createStringFromFile("avro/MutablePerson.avsc"));
+
+		MutablePerson sibling = dynamicRecords.newRecordFromSchema(MutablePerson.class, schema,
+				new HashMap<>(Map.of("name", "Lord Vader", "state", State.Closed, "siblings", List.of())));
+		MutablePerson person = dynamicRecords.newRecordFromSchema(MutablePerson.class, schema,
+				new HashMap<>(Map.of("name", "Daan", "state", State.Open, "siblings", List.of(sibling))));
+
+		assertThat(person.getSiblings()).hasSize(1);
+		assertThat(person.getSiblings().get(0)).isInstanceOf(AbstractDynamicRecord.class);
+		assertThat(person.getSiblings().get(0).getName()).isEqualTo("Lord Vader");
+	}
+
+	@Test
+	void testDefinitionsMatchReflectiveTables() throws NoSuchMethodException {
+		DispatchTable definition = RecordDefinition.builder(Measurement.class).setter("count", int.class)
+				.setter("timestamp", Long.class).build().table();
+		RecordAccessor reflective = DispatchTable.forClass(Measurement.class)
+				.accessor(Measurement.class.getMethod("setCount", int.class));
+
+		assertThat(((RecordAccessor.Setter) reflective).primitive).isTrue();
+		assertThat(((RecordAccessor.Setter) definition.accessorAt(0)).primitive).isTrue();
+		assertThat(((RecordAccessor.Setter) definition.accessorAt(1)).primitive).isFalse();
+
+		// -- proxies created by hand for interfaces with a definition resolve their methods reflectively
+		assertThat(definition.forProxies().accessor(Measurement.class.getMethod("setCount", int.class)))
+				.isInstanceOf(RecordAccessor.Setter.class);
+		DispatchTable table = DispatchTable.forClass(Measurement.class);
+		assertThat(table.forProxies()).isSameAs(table);
+	}
+
+	@Test
+	void testPrimitiveAccessors() throws ValueMappingException {
+		for (RecordFactory.Engine engine : RecordFactory.Engine.values()) {
+			RecordFactory.setEngine(engine);
+
+			Schema schema = AvroUtils.schemaFromClass(Measurement.class);
+			assertThat(schema.getField("count").schema().getType()).isEqualTo(Schema.Type.INT);
+			assertThat(schema.getField("valid").schema().getType()).isEqualTo(Schema.Type.BOOLEAN);
+
+			Measurement measurement = dynamicRecords.newRecordFromSchema(Measurement.class, schema,
+					new HashMap<>(Map.of("count", 1, "timestamp", 2L, "ratio", 0.5f, "value", 1.5, "valid", true)));
+
+			assertThat(Proxy.isProxyClass(measurement.getClass())).isEqualTo(engine == RecordFactory.Engine.PROXY);
+			assertThat(measurement.getCount()).isEqualTo(1);
+			assertThat(measurement.getTimestamp()).isEqualTo(2L);
+			assertThat(measurement.getRatio()).isEqualTo(0.5f);
+			assertThat(measurement.getValue()).isEqualTo(1.5);
+			assertThat(measurement.isValid()).isTrue();
+
+			measurement.setCount(42);
+			measurement.setTimestamp(43L);
+			measurement.setRatio(0.25f);
+			measurement.setValue(2.5);
+			measurement.setValid(false);
+
+			assertThat(measurement.record().get("count")).isEqualTo(42);
+			assertThat(measurement.getCount()).isEqualTo(42);
+			assertThat(measurement.getTimestamp()).isEqualTo(43L);
+			assertThat(measurement.getRatio()).isEqualTo(0.25f);
+			assertThat(measurement.getValue()).isEqualTo(2.5);
+			assertThat(measurement.isValid()).isFalse();
+		}
+	}
+
+	private TestModel newTestModel() {
+		return dynamicRecords.newRecordFromSchema(TestModel.class, TestModel.SCHEMA, new HashMap<>() {
+			{
+				put("required_value", "value");
+				put("required_enum", TestEnum.Option2);
+				put("string_list", new ArrayList<>());
+				put("string_map", new HashMap<>());
+			}
+		});
+	}
+
+}
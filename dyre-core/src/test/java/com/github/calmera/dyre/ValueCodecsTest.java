@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.dyre;
+
+import java.lang.annotation.Annotation;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.dyre.decoders.ValueDecoder;
+import com.github.calmera.dyre.encoders.ValueEncoder;
+import com.github.calmera.serde.map.models.Invoice;
+import com.github.calmera.serde.map.models.Money;
+import com.github.calmera.serde.map.models.MoneyCodec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValueCodecsTest {
+
+	@Test
+	void testCodecsAreDiscovered() {
+		assertThat(ValueCodecs.codec(Money.class, Schema.Type.LONG)).isInstanceOf(MoneyCodec.class);
+		assertThat(ValueCodecs.codec(Money.class, null)).isInstanceOf(MoneyCodec.class);
+		assertThat(ValueCodecs.codec(Money.class, Schema.Type.STRING)).isNull();
+		assertThat(ValueCodecs.codec(Long.class, Schema.Type.LONG)).isNull();
+	}
+
+	@Test
+	void testCodecsMapFields() throws ValueMappingException {
+		Schema schema = AvroUtils.schemaFromClass(Invoice.class);
+		assertThat(schema.getField("total").schema().getType()).isEqualTo(Schema.Type.LONG);
+
+		Invoice invoice = DynamicRecords.getInstance().newRecordFromSchema(Invoice.class, schema,
+				new HashMap<>(Map.of("total", new Money(1234))));
+
+		assertThat(invoice.record().get("total")).isEqualTo(1234L);
+		assertThat(invoice.getTotal()).isEqualTo(new Money(1234));
+		assertThat(invoice.getDiscount()).isNull();
+
+		invoice.setDiscount(new Money(100));
+		assertThat(invoice.record().get("discount")).isEqualTo(100L);
+		assertThat(invoice.getDiscount()).isEqualTo(new Money(100));
+	}
+
+	@Test
+	void testRegisteredCodecsTakePrecedence() throws ValueMappingException {
+		record Sku(String code) {
+		}
+
+		ValueCodecs.register(new ValueCodec<Sku>() {
+			@Override
+			public Class<Sku> javaType() {
+				return Sku.class;
+			}
+
+			@Override
+			public Schema schema() {
+				return SchemaBuilder.builder().stringType();
+			}
+
+			@Override
+			public Object encode(Sku value, Schema schema) {
+				return new Utf8(value.code());
+			}
+
+			@Override
+			public Sku decode(Object raw, Schema schema) {
+				return new Sku(raw.toString());
+			}
+		});
+
+		Schema schema = SchemaBuilder.builder().stringType();
+		assertThat(ValueEncoder.DEFAULT_ENCODER.encode(schema, new Sku("A-1"), new Annotation[] {}))
+				.isEqualTo(new Utf8("A-1"));
+		assertThat(ValueEncoder.DEFAULT_ENCODER.encode(schema, "plain", new Annotation[] {}))
+				.isEqualTo(new Utf8("plain"));
+		assertThat(ValueDecoder.DEFAULT_DECODER.decode(Sku.class, schema, new Utf8("A-1"), new Annotation[] {}))
+				.isEqualTo(new Sku("A-1"));
+
+		// -- codecs registered before remain available
+		assertThat(ValueCodecs.codec(Money.class, Schema.Type.LONG)).isInstanceOf(MoneyCodec.class);
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.encoders;
+
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.dyre.ValueMappingException;
+import com.github.calmera.serde.map.models.State;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DefaultValueEncoderTest {
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[] {};
+
+	private final Schema enumSchema = SchemaBuilder.enumeration("State").symbols("Open", "Closed");
+
+	@Test
+	void testSchemasAreCompiledOnce() {
+		DefaultValueEncoder encoder = new DefaultValueEncoder();
+		Schema schema = SchemaBuilder.array().items(enumSchema);
+
+		assertThat(encoder.encoder(schema)).isSameAs(encoder.encoder(schema));
+		assertThat(encoder.encoder(new Schema.Parser().parse(schema.toString())))
+				.isNotSameAs(encoder.encoder(schema));
+	}
+
+	@Test
+	void testTrustedEncodersSkipTypeChecks() throws ValueMappingException {
+		DefaultValueEncoder encoder = new DefaultValueEncoder();
+		Schema schema = SchemaBuilder.array().items().intType();
+
+		assertThat(encoder.trustedEncoder(schema)).isSameAs(encoder.trustedEncoder(schema))
+				.isNotSameAs(encoder.encoder(schema));
+		assertThat(encoder.encodeInto(schema, List.of(1, 2), null, NO_ANNOTATIONS)).isEqualTo(List.of(1, 2));
+
+		// -- only values written through validated bindings may take the trusted path
+		assertThatThrownBy(() -> encoder.encode(schema, List.of("1"), NO_ANNOTATIONS))
+				.isInstanceOf(ValueMappingException.class);
+		assertThat(encoder.encodeInto(schema, List.of("1"), null, NO_ANNOTATIONS)).isEqualTo(List.of("1"));
+	}
+
+	@Test
+	void testEncodesNestedSchemas() throws ValueMappingException {
+		DefaultValueEncoder encoder = new DefaultValueEncoder();
+		Schema arraySchema = SchemaBuilder.array().items(enumSchema);
+		Schema mapSchema = SchemaBuilder.map().values().nullable().stringType();
+
+		Object array = encoder.encode(arraySchema, List.of(State.Open, State.Closed), NO_ANNOTATIONS);
+		assertThat(array).isInstanceOf(GenericData.Array.class);
+		assertThat(array).isEqualTo(List.of(new GenericData.EnumSymbol(enumSchema, "Open"),
+				new GenericData.EnumSymbol(enumSchema, "Closed")));
+
+		Object map = encoder.encode(mapSchema, Map.of("k", "v"), NO_ANNOTATIONS);
+		assertThat(map).isEqualTo(Map.of(new Utf8("k"), new Utf8("v")));
+	}
+
+	@Test
+	void testEncodesUnionBranches() throws ValueMappingException {
+		DefaultValueEncoder encoder = new DefaultValueEncoder();
+		Schema recordSchema = SchemaBuilder.record("Point").fields().requiredInt("x").endRecord();
+		Schema schema = SchemaBuilder.unionOf().nullType().and().stringType().and().longType().and().type(enumSchema)
+				.and().type(recordSchema).endUnion();
+		GenericData.Record point = new GenericData.Record(recordSchema);
+
+		assertThat(encoder.encode(schema, null, NO_ANNOTATIONS)).isNull();
+		assertThat(encoder.encode(schema, "text", NO_ANNOTATIONS)).isEqualTo(new Utf8("text"));
+		assertThat(encoder.encode(schema, 5L, NO_ANNOTATIONS)).isEqualTo(5L);
+		assertThat(encoder.encode(schema, State.Open, NO_ANNOTATIONS))
+				.isEqualTo(new GenericData.EnumSymbol(enumSchema, "Open"));
+		assertThat(encoder.encode(schema, point, NO_ANNOTATIONS)).isSameAs(point);
+
+		assertThatThrownBy(() -> encoder.encode(schema, 5, NO_ANNOTATIONS)).isInstanceOf(ValueMappingException.class);
+		assertThatThrownBy(() -> encoder.encode(schema,
+				new GenericData.Record(SchemaBuilder.record("Other").fields().endRecord()), NO_ANNOTATIONS))
+						.isInstanceOf(ValueMappingException.class);
+	}
+
+	@Test
+	void testBytesAreNotCopied() throws ValueMappingException {
+		DefaultValueEncoder encoder = new DefaultValueEncoder();
+		Schema schema = SchemaBuilder.builder().bytesType();
+		byte[] bytes = new byte[] { 1, 2, 3 };
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+		assertThat(encoder.encode(schema, buffer, NO_ANNOTATIONS)).isSameAs(buffer);
+		assertThat(((ByteBuffer) encoder.encode(schema, bytes, NO_ANNOTATIONS)).array()).isSameAs(bytes);
+	}
+
+	@Test
+	void testNullsAreOnlyAllowedForNullableSchemas() throws ValueMappingException {
+		DefaultValueEncoder encoder = new DefaultValueEncoder();
+		Schema arraySchema = SchemaBuilder.array().items(enumSchema);
+
+		assertThat(encoder.encode(SchemaBuilder.builder().nullable().stringType(), null, NO_ANNOTATIONS)).isNull();
+		assertThatThrownBy(() -> encoder.encode(SchemaBuilder.builder().stringType(), null, NO_ANNOTATIONS))
+				.isInstanceOf(ValueMappingException.class);
+		assertThatThrownBy(() -> encoder.encode(arraySchema, Arrays.asList(State.Open, null), NO_ANNOTATIONS))
+				.isInstanceOf(ValueMappingException.class);
+	}
+
+}
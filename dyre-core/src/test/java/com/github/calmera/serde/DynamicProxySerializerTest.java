@@ -0,0 +1,296 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.serde;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.TestUtils;
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.DynamicRecords;
+import com.github.calmera.dyre.LazyRecord;
+import com.github.calmera.dyre.RecordFactory;
+import com.github.calmera.serde.map.models.MutablePerson;
+import com.github.calmera.serde.map.models.Person;
+import com.github.calmera.serde.map.models.State;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DynamicProxySerializerTest {
+
+	private Serializer<MutablePerson> serializer;
+
+	private Deserializer<MutablePerson> deserializer;
+
+	private Deserializer<MutablePerson> lazyDeserializer;
+
+	private Deserializer<Person> projectingDeserializer;
+
+	@BeforeEach
+	void setup() throws Exception {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		TestUtils.registerSchema(sr, MutablePerson.class, "avro/MutablePerson.avsc");
+
+		// -- create and initialize the DynamicRecords
+		new DynamicRecords(sr);
+
+		serializer = DyreSerdes.dynamicSerializer(sr);
+		serializer.configure(TestUtils.serdeTestConfig(), false);
+
+		deserializer = DyreSerdes.dynamicDeserializer(MutablePerson.class, sr);
+		deserializer.configure(TestUtils.serdeTestConfig(), false);
+
+		lazyDeserializer = DyreSerdes.lazyDeserializer(MutablePerson.class, sr);
+		lazyDeserializer.configure(TestUtils.serdeTestConfig(), false);
+
+		projectingDeserializer = DyreSerdes.projectingDeserializer(Person.class, sr);
+		projectingDeserializer.configure(TestUtils.serdeTestConfig(), false);
+	}
+
+	@Test
+	void serialize() {
+		// -- serialize the data
+		MutablePerson person = MutablePerson.create("Daan", State.Open,
+				List.of(MutablePerson.create("Lord Vader", State.Closed, List.of())));
+
+		byte[] bytes = serializer.serialize("mytopic", person);
+		assertThat(bytes).isNotNull();
+
+		// -- deserialize the previous data again
+		MutablePerson otherPerson = deserializer.deserialize("mytopic", bytes);
+		assertThat(otherPerson).isNotNull();
+		assertThat(otherPerson.getName()).isEqualTo("Daan");
+		assertThat(otherPerson.getState()).isEqualTo(State.Open);
+		assertThat(otherPerson.getSiblings()).hasSize(1);
+		assertThat(otherPerson.getSiblings().get(0).getName()).isEqualTo("Lord Vader");
+		assertThat(otherPerson.getSiblings().get(0).getState()).isEqualTo(State.Closed);
+		assertThat(otherPerson.getSiblings().get(0).getSiblings()).isEmpty();
+	}
+
+	@Test
+	void deserializeLazily() {
+		MutablePerson person = MutablePerson.create("Daan", State.Open,
+				List.of(MutablePerson.create("Lord Vader", State.Closed, List.of())));
+		byte[] bytes = serializer.serialize("mytopic", person);
+
+		MutablePerson lazyPerson = lazyDeserializer.deserialize("mytopic", bytes);
+		assertThat(lazyPerson.getState()).isEqualTo(State.Open);
+		assertThat(lazyPerson.getSiblings().get(0).getName()).isEqualTo("Lord Vader");
+
+		// -- handing out the record decodes it completely
+		assertThat(lazyPerson.record()).isNotInstanceOf(LazyRecord.class)
+				.isEqualTo(deserializer.deserialize("mytopic", bytes).record());
+		assertThat(serializer.serialize("mytopic", lazyPerson)).isEqualTo(bytes);
+	}
+
+	@Test
+	void deserializeProjected() {
+		MutablePerson person = MutablePerson.create("Daan", State.Open,
+				List.of(MutablePerson.create("Lord Vader", State.Closed, List.of())));
+		byte[] bytes = serializer.serialize("mytopic", person);
+
+		// -- only the fields declared by the interface are decoded
+		Person projected = projectingDeserializer.deserialize("mytopic", bytes);
+		assertThat(projected.getName()).isEqualTo("Daan");
+		assertThat(projected.record().getSchema().getFullName()).isEqualTo(person.record().getSchema().getFullName());
+		assertThat(projected.record().getSchema().getFields()).extracting(Schema.Field::name).containsExactly("name");
+		assertThat(projectingDeserializer.deserialize("mytopic", bytes).record().getSchema())
+				.isSameAs(projected.record().getSchema());
+	}
+
+	@Test
+	void serializeDirectly() throws Exception {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		Serializer<MutablePerson> directSerializer = DyreSerdes.directSerializer(sr);
+		directSerializer.configure(TestUtils.serdeTestConfig(), false);
+
+		MutablePerson person = MutablePerson.create("Daan", State.Open,
+				List.of(MutablePerson.create("Lord Vader", State.Closed, List.of())));
+
+		// -- same wire format as the registry serializer
+		byte[] bytes = directSerializer.serialize("mytopic", person);
+		assertThat(bytes).isEqualTo(serializer.serialize("mytopic", person));
+		assertThat(directSerializer.serialize("mytopic", person)).isEqualTo(bytes);
+
+		Deserializer<MutablePerson> directDeserializer = DyreSerdes.directDeserializer(MutablePerson.class, sr, false);
+		MutablePerson result = directDeserializer.deserialize("mytopic", bytes);
+		assertThat(result).isEqualTo(person);
+		assertThat(directDeserializer.deserialize("mytopic", bytes).record()).isNotSameAs(result.record());
+	}
+
+	@Test
+	void deserializeReusingRecords() {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		Deserializer<MutablePerson> reusingDeserializer = DyreSerdes.directDeserializer(MutablePerson.class, sr, true);
+
+		byte[] first = serializer.serialize("mytopic", MutablePerson.create("Daan", State.Open, List.of()));
+		byte[] second = serializer.serialize("mytopic", MutablePerson.create("Lord Vader", State.Closed, List.of()));
+
+		MutablePerson result = reusingDeserializer.deserialize("mytopic", first);
+		assertThat(result.getName()).isEqualTo("Daan");
+
+		// -- the second message is decoded into the record of the first one
+		MutablePerson next = reusingDeserializer.deserialize("mytopic", second);
+		assertThat(next.getName()).isEqualTo("Lord Vader");
+		assertThat(next.getState()).isEqualTo(State.Closed);
+		assertThat(next.record()).isSameAs(result.record());
+	}
+
+	@Test
+	void serializeDirectlyAsConfigured() throws Exception {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		MutablePerson person = MutablePerson.create("Daan", State.Open, List.of());
+
+		Map<String, Object> config = new HashMap<>(TestUtils.serdeTestConfig());
+		config.put("use.latest.version", true);
+		assertThatThrownBy(() -> DyreSerdes.directSerializer(sr).configure(config, false))
+				.isInstanceOf(ConfigException.class);
+
+		// -- schemas are looked up instead of registered
+		config.remove("use.latest.version");
+		config.put("auto.register.schemas", false);
+		Serializer<MutablePerson> lookupSerializer = DyreSerdes.directSerializer(sr);
+		lookupSerializer.configure(config, false);
+		assertThatThrownBy(() -> lookupSerializer.serialize("unregistered", person))
+				.isInstanceOf(SerializationException.class);
+
+		byte[] bytes = serializer.serialize("registered", person);
+		assertThat(lookupSerializer.serialize("registered", person)).isEqualTo(bytes);
+
+		// -- subjects are named by the configured strategy
+		sr.register(person.record().getSchema().getFullName(), new AvroSchema(person.record().getSchema()));
+		config.put("value.subject.name.strategy", "io.confluent.kafka.serializers.subject.RecordNameStrategy");
+		Serializer<MutablePerson> recordNameSerializer = DyreSerdes.directSerializer(sr);
+		recordNameSerializer.configure(config, false);
+		assertThat(recordNameSerializer.serialize("unregistered", person)).isEqualTo(bytes);
+	}
+
+	@Test
+	void reuseRecordsPerSchema() {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		Deserializer<Person> reusingDeserializer = DyreSerdes.projectingDeserializer(Person.class, sr, true);
+
+		KafkaAvroSerializer genericSerializer = new KafkaAvroSerializer(sr);
+		genericSerializer.configure(TestUtils.serdeTestConfig(), false);
+		Schema other = SchemaBuilder.record("Person").namespace("com.korfinancial.streaming.model").fields()
+				.requiredString("name").requiredInt("age").endRecord();
+		GenericRecord otherPerson = new GenericData.Record(other);
+		otherPerson.put("name", "Lord Vader");
+		otherPerson.put("age", 45);
+
+		byte[] first = serializer.serialize("mytopic", MutablePerson.create("Daan", State.Open, List.of()));
+		byte[] second = genericSerializer.serialize("othertopic", otherPerson);
+
+		Person daan = reusingDeserializer.deserialize("mytopic", first);
+		Person vader = reusingDeserializer.deserialize("othertopic", second);
+		assertThat(vader.getAge()).isEqualTo(45);
+
+		// -- interleaved schemas each reuse their own record
+		assertThat(reusingDeserializer.deserialize("mytopic", first).record()).isSameAs(daan.record());
+		assertThat(reusingDeserializer.deserialize("othertopic", second).record()).isSameAs(vader.record());
+	}
+
+	@Test
+	void passUnmodifiedRecordsThrough() {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		Serializer<MutablePerson> directSerializer = DyreSerdes.directSerializer(sr);
+		directSerializer.configure(TestUtils.serdeTestConfig(), false);
+		Deserializer<MutablePerson> directDeserializer = DyreSerdes.directDeserializer(MutablePerson.class, sr, false);
+
+		byte[] bytes = directSerializer.serialize("mytopic", MutablePerson.create("Daan", State.Open,
+				List.of(MutablePerson.create("Lord Vader", State.Closed, List.of()))));
+
+		// -- reading plain fields keeps the record clean
+		MutablePerson person = directDeserializer.deserialize("mytopic", bytes);
+		assertThat(person.getName()).isEqualTo("Daan");
+		assertThat(RecordFactory.source(person)).isNotNull();
+		assertThat(directSerializer.serialize("mytopic", person)).isEqualTo(bytes).isNotSameAs(bytes);
+
+		// -- schemas which aren't registered for the topic are encoded again instead
+		Map<String, Object> config = new HashMap<>(TestUtils.serdeTestConfig());
+		config.put("auto.register.schemas", false);
+		Serializer<MutablePerson> lookupSerializer = DyreSerdes.directSerializer(sr);
+		lookupSerializer.configure(config, false);
+		assertThatThrownBy(() -> lookupSerializer.serialize("unregistered", person))
+				.isInstanceOf(SerializationException.class);
+		assertThat(directSerializer.serialize("othertopic", person)).isEqualTo(bytes);
+
+		// -- writing a field drops the source
+		person.setState(State.Closed);
+		assertThat(RecordFactory.source(person)).isNull();
+		assertThat(directSerializer.serialize("mytopic", person)).isNotEqualTo(bytes);
+
+		// -- nested records and the generic record itself may be modified behind the back of the handler
+		MutablePerson nested = directDeserializer.deserialize("mytopic", bytes);
+		nested.getSiblings().get(0).setName("Luke");
+		assertThat(RecordFactory.source(nested)).isNull();
+
+		MutablePerson exposed = directDeserializer.deserialize("mytopic", bytes);
+		exposed.record();
+		assertThat(RecordFactory.source(exposed)).isNull();
+
+		// -- lazy records keep their message as well
+		MutablePerson lazy = lazyDeserializer.deserialize("mytopic", bytes);
+		assertThat(lazy.getName()).isEqualTo("Daan");
+		assertThat(RecordFactory.source(lazy).message()).isSameAs(bytes);
+
+		// -- records which aren't decoded from a message have no source
+		assertThat(RecordFactory.source(deserializer.deserialize("mytopic", bytes))).isNull();
+	}
+
+	@Test
+	void dropSourceOfSharedStrings() {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		Serializer<RawPerson> directSerializer = DyreSerdes.directSerializer(sr);
+		directSerializer.configure(TestUtils.serdeTestConfig(), false);
+		Deserializer<RawPerson> directDeserializer = DyreSerdes.directDeserializer(RawPerson.class, sr, false);
+
+		byte[] bytes = serializer.serialize("mytopic", MutablePerson.create("Daan", State.Open, List.of()));
+
+		// -- the Utf8 handed out is the one of the record, so it may be modified
+		RawPerson person = directDeserializer.deserialize("mytopic", bytes);
+		person.getName().set("Luke");
+		assertThat(RecordFactory.source(person)).isNull();
+		assertThat(directDeserializer.deserialize("mytopic", directSerializer.serialize("mytopic", person)).getName()
+				.toString()).isEqualTo("Luke");
+	}
+
+	interface RawPerson extends DynamicRecord {
+
+		Utf8 getName();
+
+	}
+
+}
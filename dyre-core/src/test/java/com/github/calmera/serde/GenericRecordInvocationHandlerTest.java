@@ -0,0 +1,409 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.serde;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.TestUtils;
+import com.github.calmera.dyre.AvroUtils;
+import com.github.calmera.dyre.DynamicRecords;
+import com.github.calmera.dyre.GenericRecordInvocationHandler;
+import com.github.calmera.dyre.RecordFactory;
+import com.github.calmera.dyre.ValueMappingException;
+import com.github.calmera.dyre.decoders.ValueDecoder;
+import com.github.calmera.dyre.encoders.ValueEncoder;
+import com.github.calmera.serde.map.models.Contact;
+import com.github.calmera.serde.map.models.Digest;
+import com.github.calmera.serde.map.models.Drawing;
+import com.github.calmera.serde.map.models.Event;
+import com.github.calmera.serde.map.models.MutablePerson;
+import com.github.calmera.serde.map.models.Person;
+import com.github.calmera.serde.map.models.Shape;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GenericRecordInvocationHandlerTest {
+
+	@BeforeAll
+	static void beforeAll() throws Exception {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+		TestUtils.registerSchema(sr, TestModel.class, TestModel.SCHEMA);
+
+		new DynamicRecords(sr);
+	}
+
+	@Test
+	void testGet() {
+		String requiredValue = UUID.randomUUID().toString();
+		TestEnum requiredEnum = TestEnum.Option3;
+
+		List<String> originalList = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+		Map<String, String> originalMap = Map.of(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+				UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+		TestModel model = TestModel.create(requiredValue, requiredEnum, originalList, originalMap);
+
+		assertThat(model.getRequiredValue()).isEqualTo(requiredValue);
+		assertThat(model.getRequiredEnum()).isEqualTo(requiredEnum);
+		assertThat(model.getStringList()).containsOnlyOnceElementsOf(originalList);
+		assertThat(model.getStringMap()).containsExactlyInAnyOrderEntriesOf(originalMap);
+	}
+
+	@Test
+	void testSet() {
+		TestModel model = TestModel.create();
+
+		String v = UUID.randomUUID().toString();
+		List<String> l = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+		Map<String, String> m = Map.of(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+				UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+		assertThat(model.getRequiredValue()).isEqualTo("");
+		model.setRequiredValue(v);
+		assertThat(model.getRequiredValue()).isEqualTo(v);
+
+		assertThat(model.getOptionalValue()).isNull();
+		model.setOptionalValue(v);
+		assertThat(model.getOptionalValue()).isEqualTo(v);
+
+		assertThat(model.getStringList()).isEmpty();
+		model.setStringList(l);
+		assertThat(model.getStringList()).containsOnlyOnceElementsOf(l);
+
+		assertThat(model.getStringMap()).isEmpty();
+		model.setStringMap(m);
+		assertThat(model.getStringMap()).containsExactlyInAnyOrderEntriesOf(m);
+	}
+
+	@Test
+	void testAddToSimpleList() {
+		String valueToAdd = UUID.randomUUID().toString();
+
+		TestModel model = TestModel.create();
+		assertThat(model.getStringList()).isEmpty();
+		model.addToStringList(valueToAdd);
+		assertThat(model.getStringList()).containsOnly(valueToAdd);
+	}
+
+	@Test
+	void testRemoveFromSimpleList() {
+		String valueToAdd = UUID.randomUUID().toString();
+
+		TestModel model = TestModel.create();
+		model.addToStringList(valueToAdd);
+
+		model.removeFromStringList(valueToAdd);
+		assertThat(model.getStringList()).isEmpty();
+	}
+
+	@Test
+	void testPutIntoSimpleMap() {
+		String keyToPut = UUID.randomUUID().toString();
+		String valueToPut = UUID.randomUUID().toString();
+
+		TestModel model = TestModel.create();
+		assertThat(model.getStringMap()).isEmpty();
+		model.putIntoStringMap(keyToPut, valueToPut);
+		assertThat(model.getStringMap()).containsOnlyKeys(keyToPut);
+		assertThat(model.getStringMap().get(keyToPut)).isEqualTo(valueToPut);
+	}
+
+	@Test
+	void testRemoveFromSimpleMap() {
+		String keyToPut = UUID.randomUUID().toString();
+		String valueToPut = UUID.randomUUID().toString();
+
+		TestModel model = TestModel.create();
+		model.putIntoStringMap(keyToPut, valueToPut);
+		assertThat(model.getStringMap()).containsOnlyKeys(keyToPut);
+
+		model.removeFromStringMap(keyToPut);
+		assertThat(model.getStringMap()).isEmpty();
+	}
+
+	@Test
+	void testCollectionsAreModifiedInPlace() {
+		TestModel model = TestModel.create();
+		Object array = model.record().get("string_list");
+
+		model.addToStringList("a");
+		model.addToStringList("b");
+		model.removeFromStringList("a");
+		assertThat(model.record().get("string_list")).isSameAs(array);
+		assertThat(model.getStringList()).containsExactly("b");
+
+		// -- deserialized maps use utf8 keys
+		model.record().put("string_map", new HashMap<>(Map.of(new Utf8("k"), new Utf8("v"))));
+		model.putIntoStringMap("k", "other");
+		assertThat((Map<?, ?>) model.record().get("string_map")).hasSize(1);
+		assertThat(model.getStringMap()).containsExactly(Map.entry("k", "other"));
+
+		model.removeFromStringMap("k");
+		assertThat(model.getStringMap()).isEmpty();
+	}
+
+	@Test
+	void testEditAppliesAllChangesAtOnce() throws Throwable {
+		TestModel model = TestModel.create();
+		String original = model.getRequiredValue();
+
+		DynamicRecords.edit(model, m -> {
+			m.setRequiredValue("edited");
+			m.addToStringList("a");
+			m.addToStringList("b");
+			m.putIntoStringMap("k", "v");
+
+			// -- staged values are visible while editing, but the record is untouched
+			assertThat(m.getRequiredValue()).isEqualTo("edited");
+			assertThat(m.getStringList()).containsExactly("a", "b");
+			assertThat(m.record().get("required_value")).hasToString(original);
+
+			// -- the collection operations edit one working copy, while getters hand out read-only views
+			List<String> staged = m.getStringList();
+			m.addToStringList("c");
+			assertThat(staged).containsExactly("a", "b", "c");
+			assertThatThrownBy(() -> staged.add("d")).isInstanceOf(UnsupportedOperationException.class);
+			m.removeFromStringList("c");
+			assertThat(staged).containsExactly("a", "b");
+		});
+
+		assertThat(model.getRequiredValue()).isEqualTo("edited");
+		assertThat(model.getStringList()).containsExactly("a", "b");
+		assertThat(model.getStringMap()).containsExactly(Map.entry("k", "v"));
+
+		// -- a value that can't be encoded discards the whole edit
+		assertThatThrownBy(() -> DynamicRecords.edit(model, m -> {
+			m.setOptionalValue("optional");
+			m.setRequiredValue(null);
+		})).isInstanceOf(ValueMappingException.class);
+
+		assertThat(model.getRequiredValue()).isEqualTo("edited");
+		assertThat(model.getOptionalValue()).isNull();
+	}
+
+	@Test
+	void testLogicalTypes() throws Throwable {
+		Schema schema = AvroUtils.schemaFromClass(Event.class);
+		assertThat(schema.getField("occurred_at").schema().getLogicalType().getName()).isEqualTo("timestamp-millis");
+		assertThat(schema.getField("amount").schema().getLogicalType())
+				.isEqualTo(LogicalTypes.decimal(10, 2));
+
+		UUID id = UUID.randomUUID();
+		Instant occurredAt = Instant.ofEpochMilli(1666000000000L);
+		Event event = DynamicRecords.getInstance().newRecordFromSchema(Event.class, schema,
+				new HashMap<>(Map.of("id", id, "occurred_at", occurredAt, "day", LocalDate.of(2022, 10, 17), "amount",
+						new BigDecimal("12.34"))));
+
+		assertThat(event.record().get("occurred_at")).isEqualTo(1666000000000L);
+		assertThat(event.getId()).isEqualTo(id);
+		assertThat(event.getOccurredAt()).isEqualTo(occurredAt);
+		assertThat(event.getDay()).isEqualTo(LocalDate.of(2022, 10, 17));
+		assertThat(event.getTime()).isNull();
+		assertThat(event.getAmount()).isEqualTo(new BigDecimal("12.34"));
+
+		event.setTime(LocalTime.NOON);
+		assertThat(event.record().get("time")).isEqualTo(12 * 60 * 60 * 1000);
+		assertThat(event.getTime()).isEqualTo(LocalTime.NOON);
+
+		// -- decimals can't be rounded implicitly
+		assertThatThrownBy(() -> DynamicRecords.edit(event, e -> e.setAmount(new BigDecimal("1.234"))))
+				.isInstanceOf(ValueMappingException.class);
+	}
+
+	@Test
+	void testFixedFields() throws Throwable {
+		Schema schema = AvroUtils.schemaFromClass(Digest.class);
+		assertThat(schema.getField("id").schema().getType()).isEqualTo(Schema.Type.FIXED);
+		assertThat(schema.getField("hash").schema().getFixedSize()).isEqualTo(4);
+
+		UUID id = UUID.randomUUID();
+		byte[] hash = new byte[] { 1, 2, 3, 4 };
+		Digest digest = DynamicRecords.getInstance().newRecordFromSchema(Digest.class, schema,
+				new HashMap<>(Map.of("id", id, "hash", hash)));
+
+		// -- fixed values own their bytes
+		GenericData.Fixed fixedHash = (GenericData.Fixed) digest.record().get("hash");
+		assertThat(fixedHash.bytes()).isEqualTo(hash).isNotSameAs(hash);
+		assertThat(digest.getId()).isEqualTo(id);
+		assertThat(digest.getHash()).isEqualTo(hash).isNotSameAs(fixedHash.bytes());
+		assertThat(digest.getSignature()).isNull();
+
+		// -- fixed values which have been handed out are shared, so they're replaced
+		GenericData.Record copy = new GenericData.Record((GenericData.Record) digest.record(), false);
+		UUID otherId = UUID.randomUUID();
+		digest.setId(otherId);
+		digest.setHash(new byte[] { 4, 3, 2, 1 });
+		assertThat(digest.getId()).isEqualTo(otherId);
+		assertThat(digest.getHash()).containsExactly(4, 3, 2, 1);
+		assertThat(copy.get("hash")).isSameAs(fixedHash);
+		assertThat(fixedHash.bytes()).containsExactly(1, 2, 3, 4);
+		assertThat(hash).containsExactly(1, 2, 3, 4);
+
+		// -- setters of validated bindings write into the fixed values the handler allocated itself
+		GenericData.Record record = new GenericData.Record(schema);
+		Digest owned = RecordFactory.wrap(Digest.class, record);
+		owned.setHash(hash);
+		Object ownedHash = record.get("hash");
+		owned.setHash(new byte[] { 4, 3, 2, 1 });
+		assertThat(record.get("hash")).isSameAs(ownedHash);
+		assertThat(owned.getHash()).containsExactly(4, 3, 2, 1);
+
+		digest.setSignature(ByteBuffer.wrap(new byte[] { 5, 6, 7, 8 }));
+		assertThat(digest.getSignature()).isEqualTo(ByteBuffer.wrap(new byte[] { 5, 6, 7, 8 }));
+		assertThat(digest.getSignature().isReadOnly()).isTrue();
+
+		assertThatThrownBy(() -> DynamicRecords.edit(digest, d -> d.setHash(new byte[] { 1 })))
+				.isInstanceOf(ValueMappingException.class);
+	}
+
+	@Test
+	void testUnionFields() throws Throwable {
+		Schema schema = AvroUtils.schemaFromClass(Drawing.class);
+		assertThat(schema.getField("shape").schema().getTypes()).extracting(Schema::getName)
+				.isEqualTo(List.of("Circle", "Square"));
+		assertThat(schema.getField("background").schema().getTypes()).extracting(Schema::getName)
+				.isEqualTo(List.of("null", "Circle", "Square"));
+
+		Shape.Circle circle = DynamicRecords.getInstance().newRecordFromSchema(Shape.Circle.class,
+				schema.getField("shape").schema().getTypes().get(0), new HashMap<>(Map.of("radius", 2.0)));
+		Drawing drawing = DynamicRecords.getInstance().newRecordFromSchema(Drawing.class, schema,
+				new HashMap<>(Map.of("shape", circle)));
+
+		assertThat(drawing.getShape()).isInstanceOf(Shape.Circle.class);
+		assertThat(((Shape.Circle) drawing.getShape()).getRadius()).isEqualTo(2.0);
+		assertThat(drawing.getBackground()).isNull();
+
+		Shape.Square square = DynamicRecords.getInstance().newRecordFromSchema(Shape.Square.class,
+				schema.getField("shape").schema().getTypes().get(1), new HashMap<>(Map.of("side", 3.0)));
+		drawing.setShape(square);
+		drawing.setBackground(circle);
+
+		assertThat(drawing.record().get("shape")).isSameAs(square.record());
+		assertThat(((Shape.Square) drawing.getShape()).getSide()).isEqualTo(3.0);
+		assertThat(drawing.getBackground()).isInstanceOf(Shape.Circle.class);
+	}
+
+	@Test
+	void testRetrieveDirect() {
+		String requiredValue = UUID.randomUUID().toString();
+		TestEnum requiredEnum = TestEnum.Option3;
+
+		List<String> originalList = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+		Map<String, String> originalMap = Map.of(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+				UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+		TestModel model = TestModel.create(requiredValue, requiredEnum, originalList, originalMap);
+
+		assertThat(model.retrieveDirect(TestModel.class, "requiredValue")).isEqualTo(requiredValue);
+		assertThat(model.retrieveDirect(TestModel.class, "requiredEnum")).isEqualTo(requiredEnum);
+		assertThat((List<String>) model.retrieveDirect(TestModel.class, "stringList"))
+				.containsOnlyOnceElementsOf(originalList);
+		assertThat((Map<String, String>) model.retrieveDirect(TestModel.class, "stringMap"))
+				.containsExactlyInAnyOrderEntriesOf(originalMap);
+	}
+
+	@Test
+	void testManipulateDirect() {
+		TestModel model = TestModel.create();
+
+		String v = UUID.randomUUID().toString();
+		List<String> l = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+		Map<String, String> m = Map.of(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+				UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+		assertThat(model.getRequiredValue()).isEqualTo("");
+		model.manipulateDirect(TestModel.class, "requiredValue", v);
+		assertThat(model.getRequiredValue()).isEqualTo(v);
+
+		assertThat(model.getOptionalValue()).isNull();
+		model.manipulateDirect(TestModel.class, "optionalValue", v);
+		assertThat(model.getOptionalValue()).isEqualTo(v);
+
+		assertThat(model.getStringList()).isEmpty();
+		model.manipulateDirect(TestModel.class, "stringList", l);
+		assertThat(model.getStringList()).containsOnlyOnceElementsOf(l);
+
+		assertThat(model.getStringMap()).isEmpty();
+		model.manipulateDirect(TestModel.class, "stringMap", m);
+		assertThat(model.getStringMap()).containsExactlyInAnyOrderEntriesOf(m);
+	}
+
+	@Test
+	void testValueCaching() {
+		TestModel model = RecordFactory.wrap(TestModel.class, new GenericRecordInvocationHandler(
+				TestModel.create().record(), ValueDecoder.DEFAULT_DECODER, ValueEncoder.DEFAULT_ENCODER, true));
+		GenericRecordInvocationHandler.resetValueCacheStatistics(TestModel.class);
+
+		List<String> list = model.getStringList();
+		assertThat(model.getStringList()).isSameAs(list);
+		assertThat(GenericRecordInvocationHandler.getValueCacheMisses(TestModel.class)).isEqualTo(1);
+		assertThat(GenericRecordInvocationHandler.getValueCacheHits(TestModel.class)).isEqualTo(1);
+		assertThat(GenericRecordInvocationHandler.getValueCacheHits(MutablePerson.class)).isZero();
+
+		model.addToStringList("a");
+		assertThat(model.getStringList()).isNotSameAs(list).containsExactly("a");
+
+		model.setRequiredValue("value");
+		assertThat(model.getRequiredValue()).isEqualTo("value");
+
+		// -- values replaced on the generic record itself are picked up as well
+		model.record().put("required_value", "other");
+		assertThat(model.getRequiredValue()).isEqualTo("other");
+	}
+
+	@Test
+	void testNestedRecordsAreReused() throws Throwable {
+		Schema schema = AvroUtils.schemaFromClass(Contact.class);
+		Schema personSchema = schema.getField("person").schema();
+
+		GenericData.Record personRecord = new GenericData.Record(personSchema);
+		personRecord.put("name", "Daan");
+		personRecord.put("age", 42);
+		personRecord.put("married", true);
+		GenericData.Record contactRecord = new GenericData.Record(schema);
+		contactRecord.put("person", personRecord);
+
+		Contact contact = RecordFactory.wrap(Contact.class, contactRecord);
+		Person person = contact.getPerson();
+		assertThat(contact.getPerson()).isSameAs(person);
+
+		GenericData.Record otherRecord = new GenericData.Record(personRecord, true);
+		otherRecord.put("name", "Tim");
+		contact.setPerson(RecordFactory.wrap(Person.class, otherRecord));
+		assertThat(contact.getPerson()).isNotSameAs(person);
+		assertThat(contact.getPerson().getName()).isEqualTo("Tim");
+	}
+
+}
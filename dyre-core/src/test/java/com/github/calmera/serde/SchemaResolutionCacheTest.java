@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.serde;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import org.junit.jupiter.api.Test;
+
+import com.github.calmera.serde.DynamicRecordDeserializer.Mode;
+import com.github.calmera.serde.map.models.MutablePerson;
+import com.github.calmera.serde.map.models.Person;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SchemaResolutionCacheTest {
+
+	@Test
+	void evictsLeastRecentlyUsed() {
+		List<Integer> resolved = new ArrayList<>();
+		SchemaResolutionCache<String> cache = new SchemaResolutionCache<>(2);
+
+		cache.get(1, id -> resolve(resolved, id));
+		cache.get(2, id -> resolve(resolved, id));
+		assertThat(cache.get(1, id -> resolve(resolved, id))).isEqualTo("schema-1");
+
+		// -- 2 has been used least recently
+		cache.get(3, id -> resolve(resolved, id));
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.evictions()).isEqualTo(1);
+
+		cache.get(1, id -> resolve(resolved, id));
+		cache.get(2, id -> resolve(resolved, id));
+		assertThat(resolved).containsExactly(1, 2, 3, 2);
+		assertThat(cache.evictions()).isEqualTo(2);
+	}
+
+	@Test
+	void shrinksToCapacity() {
+		SchemaResolutionCache<String> cache = new SchemaResolutionCache<>(4);
+		for (int id = 0; id < 4; id++) {
+			cache.get(id, String::valueOf);
+		}
+
+		cache.capacity(1);
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.evictions()).isEqualTo(3);
+		assertThat(cache.get(3, id -> "resolved again")).isEqualTo("3");
+
+		assertThatThrownBy(() -> cache.capacity(0)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void keepsTheLargestRequestedCapacity() {
+		SchemaResolutionCache<String> cache = new SchemaResolutionCache<>(256);
+
+		cache.request(8);
+		assertThat(cache.capacity()).isEqualTo(8);
+
+		cache.request(32);
+		cache.request(4);
+		assertThat(cache.capacity()).isEqualTo(32);
+	}
+
+	@Test
+	void sharedPerInterfaceClientAndMode() {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+
+		SchemaResolutionCache<Object> cache = SchemaResolutionCache.shared(Person.class, sr, Mode.DIRECT, 8);
+
+		assertThat(SchemaResolutionCache.shared(Person.class, sr, Mode.DIRECT, 8)).isSameAs(cache);
+		assertThat(SchemaResolutionCache.shared(MutablePerson.class, sr, Mode.DIRECT, 8)).isNotSameAs(cache);
+		assertThat(SchemaResolutionCache.shared(Person.class, sr, Mode.LAZY, 8)).isNotSameAs(cache);
+	}
+
+	@Test
+	void droppedOnceReleasedByAll() {
+		SchemaRegistryClient sr = MockSchemaRegistry.getClientForScope("default");
+
+		SchemaResolutionCache<Object> cache = SchemaResolutionCache.shared(Person.class, sr, Mode.PROJECTED, 8);
+		SchemaResolutionCache<Object> other = SchemaResolutionCache.shared(Person.class, sr, Mode.PROJECTED, 8);
+		assertThat(other).isSameAs(cache);
+
+		cache.release();
+		assertThat(SchemaResolutionCache.shared(Person.class, sr, Mode.PROJECTED, 8)).isSameAs(cache);
+
+		cache.release();
+		other.release();
+		assertThat(SchemaResolutionCache.shared(Person.class, sr, Mode.PROJECTED, 8)).isNotSameAs(cache);
+	}
+
+	@Test
+	void resolvesWithoutLocking() throws Exception {
+		SchemaResolutionCache<String> cache = new SchemaResolutionCache<>(4);
+
+		// -- another thread resolves an id while the first one is still being resolved
+		String value = cache.get(1, id -> CompletableFuture.supplyAsync(() -> cache.get(2, String::valueOf))
+				.orTimeout(5, TimeUnit.SECONDS).join() + id);
+
+		assertThat(value).isEqualTo("21");
+		assertThat(cache.get(1, id -> "resolved again")).isEqualTo("21");
+		assertThat(cache.size()).isEqualTo(2);
+	}
+
+	private static String resolve(List<Integer> resolved, int id) {
+		resolved.add(id);
+		return "schema-" + id;
+	}
+
+}
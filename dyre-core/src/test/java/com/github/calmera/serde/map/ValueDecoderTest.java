@@ -19,6 +19,8 @@ package com.github.calmera.serde.map;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -35,6 +37,7 @@ import org.junit.jupiter.api.Test;
 
 import com.github.calmera.dyre.DyreUtils;
 import com.github.calmera.dyre.ValueMappingException;
+import com.github.calmera.dyre.decoders.LazyValueDecoder;
 import com.github.calmera.dyre.decoders.ValueDecoder;
 import com.github.calmera.serde.map.models.EnumModel;
 import com.github.calmera.serde.map.models.ListModel;
@@ -170,6 +173,31 @@ class ValueDecoderTest {
 		Assertions.assertThat(result).isEqualTo(input);
 	}
 
+	@Test
+	void decodeReusedAvroUtf8ToString() throws ValueMappingException {
+		// -- a reused buffer holds stale bytes beyond its byte length
+		Utf8 input = new Utf8("a much longer string");
+		byte[] bytes = "short \u2615".getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(bytes, 0, input.getBytes(), 0, bytes.length);
+		input.setByteLength(bytes.length);
+
+		Object result = ValueDecoder.DEFAULT_DECODER.decode(String.class, input, new Annotation[] {});
+
+		Assertions.assertThat(result).isEqualTo("short \u2615");
+	}
+
+	@Test
+	void decodeAvroUtf8AsIs() throws ValueMappingException {
+		Utf8 input = new Utf8("my test string");
+
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(CharSequence.class, input, new Annotation[] {}))
+				.isSameAs(input);
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(Utf8.class, input, new Annotation[] {}))
+				.isSameAs(input);
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(Utf8.class, "my test string", new Annotation[] {}))
+				.isEqualTo(input);
+	}
+
 	@Test
 	void encodeAvroUtf8ListToStringList() throws ValueMappingException {
 		List<String> input = List.of("v1", "v2", "v3");
@@ -186,6 +214,98 @@ class ValueDecoderTest {
 		Assertions.assertThat(result).isEqualTo(input);
 	}
 
+	@Test
+	void decodeUnionBranchesAsObjects() throws ValueMappingException {
+		Schema enumSchema = SchemaBuilder.enumeration("State").symbols("Open", "Closed");
+		Schema schema = SchemaBuilder.unionOf().nullType().and().stringType().and().longType().and().type(enumSchema)
+				.and().type(personSchema).endUnion();
+		GenericRecord record = new GenericRecordBuilder(personSchema).set("name", "my_name").set("age", 13).build();
+
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(Object.class, schema, new Utf8("text"),
+				new Annotation[] {})).isEqualTo("text");
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(Object.class, schema, 5L, new Annotation[] {}))
+				.isEqualTo(5L);
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(Object.class, schema,
+				new GenericData.EnumSymbol(enumSchema, "Open"), new Annotation[] {})).isEqualTo("Open");
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(Object.class, schema, record, new Annotation[] {}))
+				.isSameAs(record);
+		Assertions.assertThatThrownBy(
+				() -> ValueDecoder.DEFAULT_DECODER.decode(Object.class, schema, 5, new Annotation[] {}))
+				.isInstanceOf(ValueMappingException.class);
+	}
+
+	@Test
+	void decodeBytesAsReadOnlyViews() throws ValueMappingException {
+		ByteBuffer input = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+		Schema schema = SchemaBuilder.builder().bytesType();
+
+		ByteBuffer view = (ByteBuffer) ValueDecoder.DEFAULT_DECODER.decode(ByteBuffer.class, schema, input,
+				new Annotation[] {});
+		Assertions.assertThat(view.isReadOnly()).isTrue();
+		Assertions.assertThat(view).isEqualTo(input);
+
+		input.put(0, (byte) 4);
+		Assertions.assertThat(view.get(0)).isEqualTo((byte) 4);
+
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(byte[].class, schema, input, new Annotation[] {}))
+				.isEqualTo(new byte[] { 4, 2, 3 });
+	}
+
+	@Test
+	void decodeNestedCollectionsWithSchema() throws ValueMappingException {
+		Schema enumSchema = SchemaBuilder.enumeration("State").symbols("Open", "Closed");
+		Schema schema = SchemaBuilder.nullable().map().values().array().items(enumSchema);
+		Type type = DyreUtils.parameterizedType(Map.class, String.class,
+				DyreUtils.parameterizedType(List.class, State.class));
+
+		GenericData.Array<Object> states = new GenericData.Array<>(schema.getTypes().get(0).getValueType(),
+				List.of(new GenericData.EnumSymbol(enumSchema, "Closed"), new GenericData.EnumSymbol(enumSchema, "Open")));
+
+		Object result = ValueDecoder.DEFAULT_DECODER.decode(type, schema, Map.of(new Utf8("k"), states),
+				new Annotation[] {});
+
+		Assertions.assertThat(result).isEqualTo(Map.of("k", List.of(State.Closed, State.Open)));
+		Assertions.assertThat(ValueDecoder.DEFAULT_DECODER.decode(type, schema, null, new Annotation[] {})).isNull();
+	}
+
+	@Test
+	void decodeLazyViews() throws ValueMappingException {
+		ValueDecoder decoder = new LazyValueDecoder(true);
+
+		Schema arrSchema = SchemaBuilder.array().items(SchemaBuilder.builder().stringType());
+		GenericData.Array<Utf8> arrUtf8 = new GenericData.Array<>(arrSchema, List.of(new Utf8("v1"), new Utf8("v2")));
+
+		List<String> list = (List<String>) decoder.decode(DyreUtils.parameterizedType(List.class, String.class), arrUtf8,
+				new Annotation[] {});
+		Assertions.assertThat(list).isEqualTo(List.of("v1", "v2"));
+		Assertions.assertThat(list.get(0)).isSameAs(list.get(0));
+		Assertions.assertThatThrownBy(() -> list.add("v3")).isInstanceOf(UnsupportedOperationException.class);
+
+		Map<String, String> map = (Map<String, String>) decoder.decode(
+				DyreUtils.parameterizedType(Map.class, String.class, String.class),
+				Map.of(new Utf8("k1"), new Utf8("v1")), new Annotation[] {});
+		Assertions.assertThat(map.get("k1")).isEqualTo("v1");
+		Assertions.assertThat(map).containsOnlyKeys("k1").isEqualTo(Map.of("k1", "v1"));
+		Assertions.assertThatThrownBy(() -> map.put("k2", "v2")).isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	void decodeNestedRecordsWithTheSameDecoder() throws ValueMappingException {
+		Schema listSchema = SchemaBuilder.array().items(SchemaBuilder.builder().stringType());
+		Schema personListSchema = SchemaBuilder.array().items(personSchema);
+		Schema schema = SchemaBuilder.record("ListModel").fields().name("string_list").type(listSchema).noDefault()
+				.name("person_list").type(personListSchema).noDefault().endRecord();
+
+		GenericRecord record = new GenericRecordBuilder(schema)
+				.set("string_list", new GenericData.Array<>(listSchema, List.of("v1", "v2")))
+				.set("person_list", new GenericData.Array<>(personListSchema, List.of())).build();
+
+		ListModel model = (ListModel) new LazyValueDecoder().decode(ListModel.class, record, new Annotation[] {});
+		Assertions.assertThat(model.getStringList()).isEqualTo(List.of("v1", "v2"));
+		Assertions.assertThatThrownBy(() -> model.getStringList().add("v3"))
+				.isInstanceOf(UnsupportedOperationException.class);
+	}
+
 	GenericRecord createRandomPerson(boolean withNickname, boolean withMarried) {
 		GenericRecordBuilder builder = new GenericRecordBuilder(personSchema).set("name", UUID.randomUUID().toString())
 				.set("age", random.nextInt(100));
@@ -14,21 +14,14 @@
  * limitations under the License.
  */
 
-package com.github.calmera.dyre.annotations;
+package com.github.calmera.serde.map.models;
 
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
+import com.github.calmera.dyre.DynamicRecord;
 
-/**
- * @author Daan Gerits
- */
-@Retention(RetentionPolicy.RUNTIME)
-public @interface DyreField {
+public interface Contact extends DynamicRecord {
+
+	Person getPerson();
 
-	/**
-	 * Indicator to signal if the field is required or not
-	 * @return true if required, false if not; defaults to true.
-	 */
-	boolean required() default true;
+	void setPerson(Person person);
 
 }
@@ -14,21 +14,21 @@
  * limitations under the License.
  */
 
-package com.github.calmera.dyre.decoders;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Type;
+package com.github.calmera.serde.map.models;
 
-import com.github.calmera.dyre.ValueMappingException;
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.annotations.DyreField;
 
-/**
- * @author Daan Gerits
- * @author Tim Ysewyn
- */
-public interface ValueDecoder {
+public interface Drawing extends DynamicRecord {
+
+	Shape getShape();
+
+	void setShape(Shape value);
 
-	ValueDecoder DEFAULT_DECODER = new DefaultValueDecoder();
+	@DyreField(required = false)
+	Shape getBackground();
 
-	Object decode(Type expected, Object actualValue, Annotation[] annotations) throws ValueMappingException;
+	void setBackground(Shape value);
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.serde.map.models;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.UUID;
+
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.annotations.DyreField;
+
+public interface Event extends DynamicRecord {
+
+	UUID getId();
+
+	void setId(UUID value);
+
+	Instant getOccurredAt();
+
+	void setOccurredAt(Instant value);
+
+	LocalDate getDay();
+
+	void setDay(LocalDate value);
+
+	@DyreField(required = false)
+	LocalTime getTime();
+
+	void setTime(LocalTime value);
+
+	@DyreField(precision = 10, scale = 2)
+	BigDecimal getAmount();
+
+	void setAmount(BigDecimal value);
+
+}
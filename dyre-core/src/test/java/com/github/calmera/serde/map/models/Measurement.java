@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.serde.map.models;
+
+import com.github.calmera.dyre.DynamicRecord;
+
+public interface Measurement extends DynamicRecord {
+
+	int getCount();
+
+	void setCount(int value);
+
+	long getTimestamp();
+
+	void setTimestamp(long value);
+
+	float getRatio();
+
+	void setRatio(float value);
+
+	double getValue();
+
+	void setValue(double value);
+
+	boolean isValid();
+
+	void setValid(boolean value);
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.serde.map.models;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+
+import com.github.calmera.dyre.DyreUtils;
+import com.github.calmera.dyre.ValueCodec;
+import com.github.calmera.dyre.ValueMappingException;
+
+public final class MoneyCodec implements ValueCodec<Money> {
+
+	@Override
+	public Class<Money> javaType() {
+		return Money.class;
+	}
+
+	@Override
+	public Schema schema() {
+		return SchemaBuilder.builder().longType();
+	}
+
+	@Override
+	public Object encode(Money value, Schema schema) {
+		return value.cents();
+	}
+
+	@Override
+	public Money decode(Object raw, Schema schema) throws ValueMappingException {
+		return new Money(DyreUtils.expectType(Long.class, raw));
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.calmera.serde.map.models;
+
+import com.github.calmera.dyre.DynamicRecord;
+
+public sealed interface Shape extends DynamicRecord permits Shape.Circle, Shape.Square {
+
+	non-sealed interface Circle extends Shape {
+
+		double getRadius();
+
+		void setRadius(double value);
+
+	}
+
+	non-sealed interface Square extends Shape {
+
+		double getSide();
+
+		void setSide(double value);
+
+	}
+
+}
@@ -0,0 +1,562 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.apache.avro.Schema;
+
+/**
+ * Generates an implementation class for every {@code DynamicRecord} interface annotated
+ * with {@code @DyreRecord}, or having methods annotated with {@code @DyreField}.
+ *
+ * For an interface {@code com.acme.Person} the processor generates:
+ * <ul>
+ * <li>{@code com.acme.Dyre_Person}, implementing the interface on top of a
+ * {@code GenericRecord} without any reflection, along with a nested {@code Provider};</li>
+ * <li>{@code META-INF/dyre/schemas/com.acme.Person.avsc}, holding the derived avro
+ * schema;</li>
+ * <li>an entry in {@code META-INF/services/com.github.calmera.dyre.RecordProvider},
+ * through which the runtime picks up the generated class.</li>
+ * </ul>
+ *
+ * @author Daan Gerits
+ */
+@SupportedAnnotationTypes({ DyreRecordProcessor.DYRE_RECORD, DyreRecordProcessor.DYRE_FIELD })
+public class DyreRecordProcessor extends AbstractProcessor {
+
+	static final String DYNAMIC_RECORD = "com.github.calmera.dyre.DynamicRecord";
+
+	static final String DYRE_RECORD = "com.github.calmera.dyre.annotations.DyreRecord";
+
+	static final String DYRE_FIELD = "com.github.calmera.dyre.annotations.DyreField";
+
+	static final String PROVIDERS_RESOURCE = "META-INF/services/com.github.calmera.dyre.RecordProvider";
+
+	static final String SCHEMAS_LOCATION = "META-INF/dyre/schemas/";
+
+	private static final String PREFIX = "Dyre_";
+
+	// -- string literals are limited in size by the class file format
+	private static final int MAX_LITERAL_LENGTH = 8192;
+
+	private final Set<String> generated = new TreeSet<>();
+
+	private final Set<String> providers = new TreeSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeProviders();
+			return false;
+		}
+
+		Map<String, TypeElement> recordTypes = new LinkedHashMap<>();
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				Element candidate = element.getKind() == ElementKind.METHOD ? element.getEnclosingElement() : element;
+
+				if (candidate.getKind() == ElementKind.INTERFACE && isDynamicRecord((TypeElement) candidate)) {
+					TypeElement recordType = (TypeElement) candidate;
+					recordTypes.putIfAbsent(recordType.getQualifiedName().toString(), recordType);
+				}
+			}
+		}
+
+		for (TypeElement recordType : recordTypes.values()) {
+			if (generated.add(recordType.getQualifiedName().toString())) {
+				generate(recordType);
+			}
+		}
+
+		return false;
+	}
+
+	private void generate(TypeElement recordType) {
+		if (!recordType.getTypeParameters().isEmpty() || !isAccessible(recordType)) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+					"no implementation can be generated for " + recordType.getQualifiedName()
+							+ ", it will be backed by a proxy at runtime",
+					recordType);
+			return;
+		}
+
+		String schemaJson = null;
+		try {
+			schemaJson = new SchemaDeriver(elements(), types()).schemaFromType(recordType).toString();
+		}
+		catch (SchemaDeriver.UnsupportedTypeException | RuntimeException ex) {
+			// -- the schema is allowed to come from the schema registry instead
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+					"no schema could be derived for " + recordType.getQualifiedName() + ": " + ex.getMessage(),
+					recordType);
+		}
+
+		String packageName = elements().getPackageOf(recordType).getQualifiedName().toString();
+		String className = generatedClassName(recordType);
+		String qualifiedClassName = packageName.isEmpty() ? className : packageName + "." + className;
+
+		try {
+			writeSource(recordType, packageName, className, qualifiedClassName, schemaJson);
+
+			if (schemaJson != null) {
+				writeSchema(recordType, schemaJson);
+			}
+		}
+		catch (IOException ioe) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"unable to generate the implementation of " + recordType.getQualifiedName() + ": " + ioe.getMessage(),
+					recordType);
+			return;
+		}
+
+		providers.add(qualifiedClassName + "$Provider");
+	}
+
+	private void writeSource(TypeElement recordType, String packageName, String className, String qualifiedClassName,
+			String schemaJson) throws IOException {
+		String recordClass = recordType.getQualifiedName().toString();
+		List<ExecutableElement> methods = instanceMethods(recordType);
+
+		try (PrintWriter out = new PrintWriter(
+				processingEnv.getFiler().createSourceFile(qualifiedClassName, recordType).openWriter())) {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+
+			out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+			out.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+			out.println("public final class " + className + " extends com.github.calmera.dyre.AbstractDynamicRecord");
+			out.println("\t\timplements " + recordClass + " {");
+			out.println();
+
+			out.println("\tstatic final org.apache.avro.Schema SCHEMA = " + schemaExpression(schemaJson) + ";");
+			out.println();
+
+			out.println("\tstatic final com.github.calmera.dyre.RecordDefinition DEFINITION = "
+					+ "com.github.calmera.dyre.RecordDefinition.builder(" + recordClass + ".class)");
+			for (ExecutableElement method : methods) {
+				out.println("\t\t\t" + definitionEntry(recordClass, method));
+			}
+			out.println("\t\t\t.build();");
+			out.println();
+
+			out.println("\tpublic " + className + "(com.github.calmera.dyre.GenericRecordInvocationHandler handler) {");
+			out.println("\t\tsuper(handler, DEFINITION);");
+			out.println("\t}");
+
+			for (int i = 0; i < methods.size(); i++) {
+				out.println();
+				writeMethod(out, i, methods.get(i));
+			}
+
+			out.println();
+			out.println("\tpublic static final class Provider implements com.github.calmera.dyre.RecordProvider<"
+					+ recordClass + "> {");
+			out.println();
+			out.println("\t\t@Override");
+			out.println("\t\tpublic Class<" + recordClass + "> recordClass() {");
+			out.println("\t\t\treturn " + recordClass + ".class;");
+			out.println("\t\t}");
+			out.println();
+			out.println("\t\t@Override");
+			out.println("\t\tpublic org.apache.avro.Schema schema() {");
+			out.println("\t\t\treturn SCHEMA;");
+			out.println("\t\t}");
+			out.println();
+			out.println("\t\t@Override");
+			out.println("\t\tpublic com.github.calmera.dyre.RecordDefinition definition() {");
+			out.println("\t\t\treturn DEFINITION;");
+			out.println("\t\t}");
+			out.println();
+			out.println("\t\t@Override");
+			out.println("\t\tpublic " + recordClass
+					+ " newInstance(com.github.calmera.dyre.GenericRecordInvocationHandler handler) {");
+			out.println("\t\t\treturn new " + className + "(handler);");
+			out.println("\t\t}");
+			out.println();
+			out.println("\t}");
+			out.println();
+			out.println("}");
+		}
+	}
+
+	private String definitionEntry(String recordClass, ExecutableElement method) {
+		String name = method.getSimpleName().toString();
+		List<? extends VariableElement> parameters = method.getParameters();
+
+		if (name.startsWith("get") || name.startsWith("is")) {
+			String prefix = name.startsWith("get") ? "get" : "is";
+			return ".getter(\"" + fieldName(name, prefix) + "\", " + typeExpression(method.getReturnType()) + ", "
+					+ annotationsExpression(recordClass, method.getAnnotationMirrors()) + ")";
+		}
+		else if (name.startsWith("set") && parameters.size() == 1) {
+			return ".setter(\"" + fieldName(name, "set") + "\", " + typeExpression(parameters.get(0).asType()) + ", "
+					+ annotationsExpression(recordClass, parameters.get(0).getAnnotationMirrors()) + ")";
+		}
+		else if (name.startsWith("addTo")) {
+			return ".adder(\"" + fieldName(name, "addTo") + "\")";
+		}
+		else if (name.startsWith("putInto")) {
+			return ".putter(\"" + fieldName(name, "putInto") + "\")";
+		}
+		else if (name.startsWith("removeFrom")) {
+			return ".remover(\"" + fieldName(name, "removeFrom") + "\")";
+		}
+
+		return ".unsupported(\"" + name + "\")";
+	}
+
+	private void writeMethod(PrintWriter out, int index, ExecutableElement method) {
+		String name = method.getSimpleName().toString();
+		List<? extends VariableElement> parameters = method.getParameters();
+		TypeMirror returnType = method.getReturnType();
+		boolean isVoid = returnType.getKind() == TypeKind.VOID;
+
+		StringBuilder signature = new StringBuilder();
+		StringBuilder arguments = new StringBuilder();
+		for (int i = 0; i < parameters.size(); i++) {
+			if (i > 0) {
+				signature.append(", ");
+				arguments.append(", ");
+			}
+			signature.append(parameters.get(i).asType()).append(" p").append(i);
+			arguments.append("p").append(i);
+		}
+
+		String body;
+		if ((name.startsWith("get") || name.startsWith("is")) && !isVoid) {
+			String getter = returnType.getKind().isPrimitive() ? "getPrimitive" : "get";
+			body = "return (" + castType(returnType) + ") " + getter + "(" + index + ");";
+		}
+		else if (name.startsWith("set") && parameters.size() == 1 && isVoid) {
+			String setter = parameters.get(0).asType().getKind().isPrimitive() ? "setPrimitive" : "set";
+			body = setter + "(" + index + ", p0);";
+		}
+		else {
+			String invocation = "invoke(" + index + (parameters.isEmpty() ? ", (Object[]) null" : ", " + arguments)
+					+ ")";
+			body = isVoid ? invocation + ";" : "return (" + castType(returnType) + ") " + invocation + ";";
+		}
+
+		out.println("\t@Override");
+		out.println("\tpublic " + returnType + " " + name + "(" + signature + ") {");
+		out.println("\t\t" + body);
+		out.println("\t}");
+	}
+
+	private void writeSchema(TypeElement recordType, String schemaJson) throws IOException {
+		FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+				SCHEMAS_LOCATION + recordType.getQualifiedName() + ".avsc", recordType);
+
+		try (Writer writer = resource.openWriter()) {
+			writer.write(schemaJson);
+		}
+	}
+
+	private void writeProviders() {
+		if (providers.isEmpty()) {
+			return;
+		}
+
+		Filer filer = processingEnv.getFiler();
+		Set<String> entries = new TreeSet<>(providers);
+
+		// -- keep the providers registered by an earlier, incremental, compilation
+		try {
+			FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", PROVIDERS_RESOURCE);
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.isBlank() && !line.startsWith("#")) {
+						entries.add(line.trim());
+					}
+				}
+			}
+		}
+		catch (IOException | IllegalArgumentException ex) {
+			// -- there is no earlier registration
+		}
+
+		try {
+			FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "", PROVIDERS_RESOURCE);
+			try (PrintWriter out = new PrintWriter(
+					new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8))) {
+				entries.forEach(out::println);
+			}
+		}
+		catch (IOException ioe) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"unable to register the generated records: " + ioe.getMessage());
+		}
+	}
+
+	/**
+	 * The instance methods of the interface, leaving out the ones implemented by the base
+	 * class. Default methods are overridden as well, the same way proxies and the classes
+	 * generated at runtime do.
+	 */
+	private List<ExecutableElement> instanceMethods(TypeElement recordType) {
+		List<ExecutableElement> result = new ArrayList<>();
+
+		for (ExecutableElement method : ElementFilter.methodsIn(elements().getAllMembers(recordType))) {
+			if (method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.PRIVATE)
+					|| isImplementedByBase(method)) {
+				continue;
+			}
+
+			result.add(method);
+		}
+
+		return result;
+	}
+
+	private boolean isImplementedByBase(ExecutableElement method) {
+		TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+		if (declaringType.getQualifiedName().contentEquals(DYNAMIC_RECORD)
+				|| declaringType.getQualifiedName().contentEquals(Object.class.getName())) {
+			return true;
+		}
+
+		int parameterCount = method.getParameters().size();
+		return switch (method.getSimpleName().toString()) {
+		case "record", "hashCode", "toString" -> parameterCount == 0;
+		case "equals" -> parameterCount == 1;
+		case "retrieveDirect" -> parameterCount == 2;
+		case "manipulateDirect" -> parameterCount == 3;
+		default -> false;
+		};
+	}
+
+	private boolean isDynamicRecord(TypeElement type) {
+		TypeElement dynamicRecord = elements().getTypeElement(DYNAMIC_RECORD);
+		return dynamicRecord != null && types().isAssignable(type.asType(), dynamicRecord.asType());
+	}
+
+	private static boolean isAccessible(TypeElement type) {
+		for (Element element = type; !(element instanceof PackageElement); element = element.getEnclosingElement()) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private String typeExpression(TypeMirror type) {
+		if (type.getKind() == TypeKind.DECLARED) {
+			DeclaredType declaredType = (DeclaredType) type;
+			String raw = ((TypeElement) declaredType.asElement()).getQualifiedName() + ".class";
+
+			if (declaredType.getTypeArguments().isEmpty()) {
+				return raw;
+			}
+
+			StringBuilder sb = new StringBuilder("com.github.calmera.dyre.DyreUtils.parameterizedType(").append(raw);
+			for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+				sb.append(", ").append(typeExpression(typeArgument));
+			}
+
+			return sb.append(")").toString();
+		}
+		else if (type.getKind().isPrimitive()) {
+			return type + ".class";
+		}
+		else if (type.getKind() == TypeKind.ARRAY && ((ArrayType) type).getComponentType().getKind().isPrimitive()) {
+			return type + ".class";
+		}
+
+		return types().erasure(type) + ".class";
+	}
+
+	private String castType(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return types().boxedClass(types().getPrimitiveType(type.getKind())).getQualifiedName().toString();
+		}
+
+		return type.toString();
+	}
+
+	private String annotationsExpression(String recordClass, List<? extends AnnotationMirror> annotations) {
+		for (AnnotationMirror annotation : annotations) {
+			if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(DYRE_FIELD)) {
+				int precision = (Integer) annotationValue(elements(), annotation, "precision");
+				int scale = (Integer) annotationValue(elements(), annotation, "scale");
+				int size = (Integer) annotationValue(elements(), annotation, "size");
+
+				return "com.github.calmera.dyre.DyreUtils.dyreField(" + recordClass + ".class, "
+						+ !isOptional(elements(), annotation)
+						+ ((precision != 0 || scale != 0 || size != 0) ? ", " + precision + ", " + scale + ", " + size
+								: "")
+						+ ")";
+			}
+		}
+
+		return "new java.lang.annotation.Annotation[0]";
+	}
+
+	private static String schemaExpression(String schemaJson) {
+		if (schemaJson == null) {
+			return "null";
+		}
+
+		StringBuilder sb = new StringBuilder("new org.apache.avro.Schema.Parser().parse(");
+		for (int i = 0; i < schemaJson.length(); i += MAX_LITERAL_LENGTH) {
+			if (i > 0) {
+				sb.append(",\n\t\t\t");
+			}
+			sb.append(literal(schemaJson.substring(i, Math.min(schemaJson.length(), i + MAX_LITERAL_LENGTH))));
+		}
+
+		return sb.append(")").toString();
+	}
+
+	private static String literal(String value) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+			case '"' -> sb.append("\\\"");
+			case '\\' -> sb.append("\\\\");
+			case '\n' -> sb.append("\\n");
+			case '\r' -> sb.append("\\r");
+			case '\t' -> sb.append("\\t");
+			default -> {
+				if (c < 0x20 || c > 0x7e) {
+					sb.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					sb.append(c);
+				}
+			}
+			}
+		}
+
+		return sb.append('"').toString();
+	}
+
+	static String generatedClassName(TypeElement recordType) {
+		StringBuilder name = new StringBuilder(recordType.getSimpleName());
+		for (Element enclosing = recordType.getEnclosingElement(); !(enclosing instanceof PackageElement);
+				enclosing = enclosing.getEnclosingElement()) {
+			name.insert(0, enclosing.getSimpleName() + "_");
+		}
+
+		return PREFIX + name;
+	}
+
+	/**
+	 * Convert a method name into the avro field name, the same way as
+	 * {@code DyreUtils#getFieldName} does at runtime.
+	 * @param methodName the name of the method
+	 * @param prefix the prefix of the method
+	 * @return the avro field name
+	 */
+	static String fieldName(String methodName, String prefix) {
+		String field = methodName.substring(prefix.length());
+
+		// -- change the field from camel case to snake case
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				if (i > 0) {
+					sb.append('_');
+				}
+				sb.append((char) (c + ('a' - 'A')));
+			}
+			else {
+				sb.append(c);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	static boolean isOptional(Elements elements, AnnotationMirror dyreField) {
+		Object required = annotationValue(elements, dyreField, "required");
+
+		return required != null && !((Boolean) required);
+	}
+
+	static Object annotationValue(Elements elements, AnnotationMirror annotation, String name) {
+		if (annotation == null) {
+			return null;
+		}
+
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements
+				.getElementValuesWithDefaults(annotation).entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue();
+			}
+		}
+
+		return null;
+	}
+
+	private Elements elements() {
+		return processingEnv.getElementUtils();
+	}
+
+	private Types types() {
+		return processingEnv.getTypeUtils();
+	}
+
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.processor;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.util.Utf8;
+
+import static org.apache.avro.Schema.Field.NULL_DEFAULT_VALUE;
+
+/**
+ * Derives the avro schema of a record interface from its source, following the same rules
+ * as {@code AvroUtils#schemaFromClass} does at runtime.
+ *
+ * @author Daan Gerits
+ */
+final class SchemaDeriver {
+
+	private final Elements elements;
+
+	private final Types types;
+
+	private final TypeMirror dynamicRecordType;
+
+	// -- records being derived, allowing records to refer to themselves
+	private final Map<String, Schema> inProgress = new HashMap<>();
+
+	SchemaDeriver(Elements elements, Types types) {
+		this.elements = elements;
+		this.types = types;
+		this.dynamicRecordType = elements.getTypeElement(DyreRecordProcessor.DYNAMIC_RECORD).asType();
+	}
+
+	Schema schemaFromType(TypeElement recordType) throws UnsupportedTypeException {
+		String qualifiedName = recordType.getQualifiedName().toString();
+		if (inProgress.containsKey(qualifiedName)) {
+			return inProgress.get(qualifiedName);
+		}
+
+		Schema schema = Schema.createRecord(recordType.getSimpleName().toString(), null, null, false);
+		inProgress.put(qualifiedName, schema);
+
+		try {
+			schema.setFields(fields(recordType));
+		}
+		finally {
+			inProgress.remove(qualifiedName);
+		}
+
+		return schema;
+	}
+
+	private List<Schema.Field> fields(TypeElement recordType) throws UnsupportedTypeException {
+		// -- detect the methods
+		Map<String, ExecutableElement> getters = new HashMap<>();
+		Map<String, ExecutableElement> setters = new HashMap<>();
+		Map<String, ExecutableElement> adders = new HashMap<>();
+		Map<String, ExecutableElement> removers = new HashMap<>();
+		Map<String, Map<String, AnnotationMirror>> annotations = new HashMap<>();
+
+		for (ExecutableElement method : ElementFilter.methodsIn(recordType.getEnclosedElements())) {
+			String name = method.getSimpleName().toString();
+
+			if (name.startsWith("get")) {
+				String fieldName = DyreRecordProcessor.fieldName(name, "get");
+				getters.put(fieldName, method);
+				addAnnotations(annotations, fieldName, method.getAnnotationMirrors());
+			}
+			else if (name.startsWith("is")) {
+				String fieldName = DyreRecordProcessor.fieldName(name, "is");
+				getters.put(fieldName, method);
+				addAnnotations(annotations, fieldName, method.getAnnotationMirrors());
+			}
+			else if (name.startsWith("set")) {
+				String fieldName = DyreRecordProcessor.fieldName(name, "set");
+				setters.put(fieldName, method);
+				addAnnotations(annotations, fieldName, method.getAnnotationMirrors());
+			}
+			else if (name.startsWith("addTo") || name.startsWith("putInto")) {
+				String fieldName = DyreRecordProcessor.fieldName(name, name.startsWith("addTo") ? "addTo" : "putInto");
+				adders.put(fieldName, method);
+				if (!method.getParameters().isEmpty()) {
+					addAnnotations(annotations, fieldName, method.getParameters().get(0).getAnnotationMirrors());
+				}
+				addAnnotations(annotations, fieldName, method.getAnnotationMirrors());
+			}
+			else if (name.startsWith("removeFrom")) {
+				String fieldName = DyreRecordProcessor.fieldName(name, "removeFrom");
+				removers.put(fieldName, method);
+				addAnnotations(annotations, fieldName, method.getAnnotationMirrors());
+			}
+		}
+
+		// -- determine the field names
+		SortedSet<String> fieldNames = new TreeSet<>();
+		fieldNames.addAll(getters.keySet());
+		fieldNames.addAll(setters.keySet());
+		fieldNames.addAll(adders.keySet());
+		fieldNames.addAll(removers.keySet());
+
+		List<Schema.Field> fields = new ArrayList<>();
+		for (String fieldName : fieldNames) {
+			try {
+				TypeMirror fieldType = typeOfField(fieldName, getters.get(fieldName), setters.get(fieldName));
+				AnnotationMirror dyreField = annotations.get(fieldName).get(DyreRecordProcessor.DYRE_FIELD);
+
+				fields.add(new Schema.Field(fieldName, schemaForField(fieldType, dyreField), null,
+						DyreRecordProcessor.isOptional(elements, dyreField) ? NULL_DEFAULT_VALUE : null));
+			}
+			catch (UnsupportedTypeException ute) {
+				throw new UnsupportedTypeException("failed to map field " + fieldName + ": " + ute.getMessage());
+			}
+		}
+
+		return fields;
+	}
+
+	private static void addAnnotations(Map<String, Map<String, AnnotationMirror>> annotations, String fieldName,
+			List<? extends AnnotationMirror> toAdd) {
+		Map<String, AnnotationMirror> fieldAnnotations = annotations.computeIfAbsent(fieldName,
+				(k) -> new HashMap<>());
+
+		for (AnnotationMirror annotation : toAdd) {
+			String annotationType = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName()
+					.toString();
+			fieldAnnotations.putIfAbsent(annotationType, annotation);
+		}
+	}
+
+	// -- the rules, and their order, mirror AvroUtils#schemaForField; codecs are only known at
+	// -- runtime, which ignores the derived schema as soon as any codec has been registered
+	private Schema schemaForField(TypeMirror type, AnnotationMirror dyreField) throws UnsupportedTypeException {
+		// -- primitives can't be null, so their fields are always required
+		if (type.getKind().isPrimitive()) {
+			Schema schema = primitiveSchema(type.getKind());
+			if (schema != null) {
+				return schema;
+			}
+		}
+
+		Object size = DyreRecordProcessor.annotationValue(elements, dyreField, "size");
+		if (size != null && (Integer) size > 0
+				&& (isBytes(type) || isType(type, ByteBuffer.class) || isType(type, UUID.class))) {
+			if (isType(type, UUID.class) && (Integer) size != 16) {
+				throw new UnsupportedTypeException(type + ": fixed uuids require a size of 16");
+			}
+
+			return makeOptionalIfNeeded(SchemaBuilder.fixed("Fixed" + size).size((Integer) size), dyreField);
+		}
+
+		if (isBytes(type)) {
+			return makeOptionalIfNeeded(SchemaBuilder.builder().bytesType(), dyreField);
+		}
+
+		if (type.getKind() == TypeKind.DECLARED) {
+			DeclaredType declaredType = (DeclaredType) type;
+			TypeElement element = (TypeElement) declaredType.asElement();
+			List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+
+			if (typeArguments.isEmpty()) {
+				if (isType(type, Instant.class)) {
+					return makeOptionalIfNeeded(
+							LogicalTypes.timestampMillis().addToSchema(SchemaBuilder.builder().longType()), dyreField);
+				}
+				else if (isType(type, LocalDate.class)) {
+					return makeOptionalIfNeeded(LogicalTypes.date().addToSchema(SchemaBuilder.builder().intType()),
+							dyreField);
+				}
+				else if (isType(type, LocalTime.class)) {
+					return makeOptionalIfNeeded(
+							LogicalTypes.timeMillis().addToSchema(SchemaBuilder.builder().intType()), dyreField);
+				}
+				else if (isType(type, UUID.class)) {
+					return makeOptionalIfNeeded(LogicalTypes.uuid().addToSchema(SchemaBuilder.builder().stringType()),
+							dyreField);
+				}
+				else if (isType(type, BigDecimal.class)) {
+					Object precision = DyreRecordProcessor.annotationValue(elements, dyreField, "precision");
+					if (precision == null || (Integer) precision <= 0) {
+						throw new UnsupportedTypeException(type + ": decimals require a precision");
+					}
+
+					int scale = (Integer) DyreRecordProcessor.annotationValue(elements, dyreField, "scale");
+					return makeOptionalIfNeeded(LogicalTypes.decimal((Integer) precision, scale)
+						.addToSchema(SchemaBuilder.builder().bytesType()), dyreField);
+				}
+				else if (!element.getPermittedSubclasses().isEmpty()) {
+					return unionOfPermittedSubclasses(element, dyreField);
+				}
+				else if (types.isAssignable(type, dynamicRecordType)) {
+					return makeOptionalIfNeeded(schemaFromType(element), dyreField);
+				}
+				else if (isType(type, String.class) || isType(type, CharSequence.class) || isType(type, Utf8.class)) {
+					return makeOptionalIfNeeded(SchemaBuilder.builder().stringType(), dyreField);
+				}
+				else if (isType(type, Boolean.class)) {
+					return makeOptionalIfNeeded(SchemaBuilder.builder().booleanType(), dyreField);
+				}
+				else if (isType(type, Integer.class)) {
+					return makeOptionalIfNeeded(SchemaBuilder.builder().intType(), dyreField);
+				}
+				else if (isType(type, Long.class)) {
+					return makeOptionalIfNeeded(SchemaBuilder.builder().longType(), dyreField);
+				}
+				else if (isType(type, Float.class)) {
+					return makeOptionalIfNeeded(SchemaBuilder.builder().floatType(), dyreField);
+				}
+				else if (isType(type, Double.class)) {
+					return makeOptionalIfNeeded(SchemaBuilder.builder().doubleType(), dyreField);
+				}
+				else if (isType(type, ByteBuffer.class)) {
+					return makeOptionalIfNeeded(SchemaBuilder.builder().bytesType(), dyreField);
+				}
+				else if (element.getKind() == ElementKind.ENUM) {
+					List<String> symbols = new ArrayList<>();
+					for (Element enclosed : element.getEnclosedElements()) {
+						if (enclosed.getKind() == ElementKind.ENUM_CONSTANT) {
+							symbols.add(enclosed.getSimpleName().toString());
+						}
+					}
+
+					Schema enumSchema = SchemaBuilder.enumeration(element.getSimpleName().toString())
+							.symbols(symbols.toArray(new String[] {}));
+					return makeOptionalIfNeeded(enumSchema, dyreField);
+				}
+			}
+			else if (isAssignableToRaw(type, List.class)) {
+				return makeOptionalIfNeeded(
+						SchemaBuilder.array().items(schemaForField(typeArguments.get(0), dyreField)), dyreField);
+			}
+			else if (isAssignableToRaw(type, Map.class) && typeArguments.size() == 2) {
+				return makeOptionalIfNeeded(
+						SchemaBuilder.map().values(schemaForField(typeArguments.get(1), dyreField)), dyreField);
+			}
+		}
+
+		throw new UnsupportedTypeException(type + ": unsupported type");
+	}
+
+	private TypeMirror typeOfField(String fieldName, ExecutableElement getter, ExecutableElement setter)
+			throws UnsupportedTypeException {
+		if (getter != null) {
+			return getter.getReturnType();
+		}
+
+		if (setter != null && setter.getParameters().size() == 1) {
+			return setter.getParameters().get(0).asType();
+		}
+
+		throw new UnsupportedTypeException("No getter or setter found for field " + fieldName);
+	}
+
+	private boolean isBytes(TypeMirror type) {
+		return type.getKind() == TypeKind.ARRAY && types.isSameType(type, types.getArrayType(primitive(TypeKind.BYTE)));
+	}
+
+	private boolean isType(TypeMirror type, Class<?> cls) {
+		return types.isSameType(type, elements.getTypeElement(cls.getCanonicalName()).asType());
+	}
+
+	private boolean isAssignableToRaw(TypeMirror type, Class<?> cls) {
+		return types.isAssignable(types.erasure(type),
+				types.erasure(elements.getTypeElement(cls.getCanonicalName()).asType()));
+	}
+
+	private static Schema primitiveSchema(TypeKind kind) {
+		return switch (kind) {
+		case BOOLEAN -> SchemaBuilder.builder().booleanType();
+		case INT -> SchemaBuilder.builder().intType();
+		case LONG -> SchemaBuilder.builder().longType();
+		case FLOAT -> SchemaBuilder.builder().floatType();
+		case DOUBLE -> SchemaBuilder.builder().doubleType();
+		default -> null;
+		};
+	}
+
+	private TypeMirror primitive(TypeKind kind) {
+		return types.getPrimitiveType(kind);
+	}
+
+	private Schema unionOfPermittedSubclasses(TypeElement sealedType, AnnotationMirror dyreField)
+			throws UnsupportedTypeException {
+		List<Schema> branches = new ArrayList<>();
+		if (DyreRecordProcessor.isOptional(elements, dyreField)) {
+			branches.add(SchemaBuilder.builder().nullType());
+		}
+
+		for (TypeMirror permitted : sealedType.getPermittedSubclasses()) {
+			if (!types.isAssignable(permitted, dynamicRecordType)) {
+				throw new UnsupportedTypeException(
+						sealedType + ": permitted subclass " + permitted + " is not a DynamicRecord");
+			}
+
+			branches.add(schemaFromType((TypeElement) types.asElement(permitted)));
+		}
+
+		return Schema.createUnion(branches);
+	}
+
+	private Schema makeOptionalIfNeeded(Schema schema, AnnotationMirror dyreField) {
+		if (DyreRecordProcessor.isOptional(elements, dyreField)) {
+			return SchemaBuilder.unionOf().nullType().and().type(schema).endUnion();
+		}
+
+		return schema;
+	}
+
+	/**
+	 * Thrown when a record interface uses a type which can't be mapped onto a schema.
+	 */
+	static final class UnsupportedTypeException extends Exception {
+
+		UnsupportedTypeException(String message) {
+			super(message);
+		}
+
+	}
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021-2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.calmera.dyre.processor;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.calmera.dyre.AvroUtils;
+import com.github.calmera.dyre.DynamicRecord;
+import com.github.calmera.dyre.GenericRecordInvocationHandler;
+import com.github.calmera.dyre.RecordProvider;
+import com.github.calmera.dyre.ValueMappingException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DyreRecordProcessorTest {
+
+	private static final String SOURCE = """
+			package com.acme;
+
+			import java.util.List;
+
+			import com.github.calmera.dyre.DynamicRecord;
+			import com.github.calmera.dyre.annotations.DyreField;
+			import com.github.calmera.dyre.annotations.DyreRecord;
+
+			@DyreRecord
+			public interface Person extends DynamicRecord {
+
+				String getName();
+
+				void setName(String value);
+
+				@DyreField(required = false)
+				String getNickName();
+
+				List<String> getTags();
+
+				void setTags(List<String> value);
+
+				void addToTags(String tag);
+
+				int getAge();
+
+				void setAge(int value);
+
+			}
+			""";
+
+	private static final String ORDER_SOURCE = """
+			package com.acme;
+
+			import java.math.BigDecimal;
+			import java.time.Instant;
+			import java.util.List;
+			import java.util.Map;
+			import java.util.UUID;
+
+			import com.github.calmera.dyre.DynamicRecord;
+			import com.github.calmera.dyre.annotations.DyreField;
+
+			public interface Order extends DynamicRecord {
+
+				enum Status { OPEN, CLOSED }
+
+				UUID getId();
+
+				@DyreField(size = 16)
+				byte[] getChecksum();
+
+				@DyreField(precision = 10, scale = 2)
+				BigDecimal getTotal();
+
+				Instant getPlacedAt();
+
+				@DyreField(required = false)
+				Status getStatus();
+
+				Person getCustomer();
+
+				List<Person> getContacts();
+
+				Map<String, Long> getCounters();
+
+				boolean isPaid();
+
+				Double getDiscount();
+
+				default String getLabel() {
+					return "none";
+				}
+
+			}
+			""";
+
+	private static final Map<String, String> SOURCES = Map.of("Person", SOURCE, "Order", ORDER_SOURCE);
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testGeneratesTheImplementationSchemaAndRegistration() throws Exception {
+		Path output = compile();
+
+		assertThat(output.resolve("com/acme/Dyre_Person.class")).exists();
+		assertThat(Files.readString(output.resolve(DyreRecordProcessor.PROVIDERS_RESOURCE)).trim())
+				.isEqualTo("com.acme.Dyre_Person$Provider");
+
+		Schema schema = new Schema.Parser()
+				.parse(output.resolve(DyreRecordProcessor.SCHEMAS_LOCATION + "com.acme.Person.avsc").toFile());
+		assertThat(schema.getFields()).extracting(Schema.Field::name).containsExactly("age", "name", "nick_name", "tags");
+		assertThat(schema.getField("nick_name").schema().isNullable()).isTrue();
+		assertThat(schema.getField("age").schema().getType()).isEqualTo(Schema.Type.INT);
+	}
+
+	@Test
+	void testGeneratedRecordIsUsedAtRuntime() throws Exception {
+		Path output = compile();
+
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { output.toUri().toURL() },
+				getClass().getClassLoader())) {
+			RecordProvider<?> provider = ServiceLoader.load(RecordProvider.class, classLoader).findFirst()
+					.orElseThrow();
+			GenericData.Record record = new GenericData.Record(provider.schema());
+			record.put("name", "Daan");
+			record.put("tags", new GenericData.Array<>(provider.schema().getField("tags").schema(), List.of()));
+			record.put("age", 40);
+
+			Object person = provider.newInstance(new GenericRecordInvocationHandler(record));
+			assertThat(person.getClass().getName()).isEqualTo("com.acme.Dyre_Person");
+
+			provider.recordClass().getMethod("addToTags", String.class).invoke(person, "dyre");
+			assertThat(provider.recordClass().getMethod("getName").invoke(person)).isEqualTo("Daan");
+			assertThat(provider.recordClass().getMethod("getTags").invoke(person)).isEqualTo(List.of("dyre"));
+
+			provider.recordClass().getMethod("setAge", int.class).invoke(person, 41);
+			assertThat(provider.recordClass().getMethod("getAge").invoke(person)).isEqualTo(41);
+			assertThat(record.get("age")).isEqualTo(41);
+		}
+	}
+
+	@Test
+	void testDerivesTheSameSchemaAsTheRuntime() throws Exception, ValueMappingException {
+		Path generated = compile("generated", true, "Person", "Order");
+		Path reflective = compile("reflective", false, "Person", "Order");
+
+		Schema derived = new Schema.Parser()
+				.parse(generated.resolve(DyreRecordProcessor.SCHEMAS_LOCATION + "com.acme.Order.avsc").toFile());
+
+		// -- the classes compiled without the processor come without a provider, so the
+		// -- runtime derives the schema through reflection
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { reflective.toUri().toURL() },
+				getClass().getClassLoader())) {
+			Class<? extends DynamicRecord> orderClass = classLoader.loadClass("com.acme.Order")
+					.asSubclass(DynamicRecord.class);
+
+			assertThat(derived).isEqualTo(AvroUtils.schemaFromClass(orderClass));
+		}
+	}
+
+	@Test
+	void testGeneratedRecordOverridesDefaultMethods() throws Exception {
+		Path output = compile("classes", true, "Person", "Order");
+
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { output.toUri().toURL() },
+				getClass().getClassLoader())) {
+			Class<?> orderClass = classLoader.loadClass("com.acme.Dyre_Order");
+			RecordProvider<?> provider = (RecordProvider<?>) classLoader.loadClass("com.acme.Dyre_Order$Provider")
+					.getConstructor().newInstance();
+
+			GenericData.Record record = new GenericData.Record(provider.schema());
+			record.put("label", "rush");
+
+			Object order = provider.newInstance(new GenericRecordInvocationHandler(record));
+			assertThat(order.getClass()).isEqualTo(orderClass);
+			assertThat(provider.recordClass().getMethod("getLabel").invoke(order)).isEqualTo("rush");
+		}
+	}
+
+	private Path compile() throws IOException {
+		return compile("classes", true, "Person");
+	}
+
+	private Path compile(String name, boolean process, String... recordNames) throws IOException {
+		Path sources = Files.createDirectories(tempDir.resolve(name + "-src/com/acme"));
+		Path output = Files.createDirectories(tempDir.resolve(name));
+
+		List<Path> files = new ArrayList<>();
+		for (String recordName : recordNames) {
+			files.add(Files.writeString(sources.resolve(recordName + ".java"), SOURCES.get(recordName)));
+		}
+
+		List<String> options = new ArrayList<>(
+				List.of("-d", output.toString(), "-classpath", System.getProperty("java.class.path")));
+		if (!process) {
+			options.add("-proc:none");
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null,
+					fileManager.getJavaFileObjectsFromPaths(files));
+			if (process) {
+				task.setProcessors(List.of(new DyreRecordProcessor()));
+			}
+
+			assertThat(task.call()).isTrue();
+		}
+
+		return output;
+	}
+
+}